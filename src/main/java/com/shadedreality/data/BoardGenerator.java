@@ -17,58 +17,370 @@
 
 package com.shadedreality.data;
 
+import com.shadedreality.sudokugen.Algorithm;
 import com.shadedreality.sudokugen.Board;
+import com.shadedreality.sudokugen.ConstraintSet;
 import com.shadedreality.sudokugen.Generator;
 
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.Response;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
 /**
  * Board generator. Handles board generation asynchronously.
  *
- * TODO: Create generator executor pool to avoid overloading the system.
+ * Boards are generated on a fixed pool of GEN_POOL_THREADS threads (default is the number of cores), with up to
+ * GEN_QUEUE_LIMIT more waiting their turn (default 64). Requests beyond that are turned away with 503 Service
+ * Unavailable and a Retry-After of GEN_RETRY_AFTER_SECONDS (default 10) rather than piling more CPU bound work onto
+ * the node.
+ *
+ * Each request has a Priority. Queued interactive work always starts first, and background and bulk work may only fill
+ * half the queue so there's room left for interactive requests. When an interactive request has to wait, the lowest
+ * priority running generator is cancelled at its next loop check and put back on the queue, handing its thread to the
+ * interactive request. A preempted task starts over, so each task is preempted at most GEN_MAX_PREEMPTIONS times
+ * (default 3) and then left to finish, or sustained interactive load could keep it from ever finishing.
+ *
+ * Requests with a non-zero random seed are deterministic, so a request for the same size, seed, algorithm and
+ * constraint set as a board that's already being generated joins that board instead of generating it again, and gets
+ * the same board ID back.
+ *
+ * Boards being generated are kept in a TaskRegistry indexed by size, so polling for status never takes a lock and
+ * counting by size is constant time. Whether a task finishes or is cancelled is settled by a single compare and set on
+ * the task, and a finished board is registered in the database before it leaves the TaskRegistry, so a board can
+ * always be found in one or the other.
  */
 public class BoardGenerator {
-    private static final Object generatorLock = new Object();
-    private static Map<String, GeneratorTask> taskMap = Collections.synchronizedMap(new HashMap<>());
+    // Boards of at least this size with a random seed are generated speculatively, see GeneratorTask
+    private static final int SPECULATIVE_MIN_SIZE = 4;
+    private static final int SPECULATIVE_ATTEMPTS;
+    // Variant rules make size 4 boards and puzzles far slower to generate and carve, so they stop at size 3
+    private static final int MAX_VARIANT_SIZE = 3;
+
+    static {
+        int defaultAttempts = Math.min(4, Runtime.getRuntime().availableProcessors());
+        Optional<String> attempts = Optional.ofNullable(System.getenv("GEN_SPECULATIVE_ATTEMPTS"));
+        SPECULATIVE_ATTEMPTS = attempts.map(Integer::valueOf).orElse(defaultAttempts);
+    }
+
+    static final int POOL_THREADS;
+    static final int QUEUE_LIMIT;
+    // also used by PuzzleGenerator when its own queue is full
+    static final long RETRY_AFTER_SECONDS;
+    private static final GeneratorQueue generatorQueue;
+    private static final ThreadPoolExecutor generatorPool;
+    private static final ThreadPoolExecutor speculativePool;
+
+    // Submission order, so tasks of the same priority run first come first served
+    private static final AtomicLong taskSequence = new AtomicLong();
+    // Background and bulk tasks running on the pool, which interactive tasks may preempt. Guarded by itself.
+    private static final Set<GeneratorTask> preemptible = new HashSet<>();
+    static final int MAX_PREEMPTIONS;
+
+    static {
+        int defaultThreads = Runtime.getRuntime().availableProcessors();
+        Optional<String> threads = Optional.ofNullable(System.getenv("GEN_POOL_THREADS"));
+        POOL_THREADS = Math.max(1, threads.map(Integer::valueOf).orElse(defaultThreads));
+        Optional<String> queueLimit = Optional.ofNullable(System.getenv("GEN_QUEUE_LIMIT"));
+        QUEUE_LIMIT = Math.max(1, queueLimit.map(Integer::valueOf).orElse(64));
+        Optional<String> retryAfter = Optional.ofNullable(System.getenv("GEN_RETRY_AFTER_SECONDS"));
+        RETRY_AFTER_SECONDS = retryAfter.map(Long::valueOf).orElse(10L);
+        Optional<String> maxPreemptions = Optional.ofNullable(System.getenv("GEN_MAX_PREEMPTIONS"));
+        MAX_PREEMPTIONS = Math.max(0, maxPreemptions.map(Integer::valueOf).orElse(3));
+
+        // a full queue rejects new tasks, see generateBoard
+        generatorQueue = new GeneratorQueue(QUEUE_LIMIT);
+        generatorPool = new ThreadPoolExecutor(POOL_THREADS, POOL_THREADS, 0L, TimeUnit.MILLISECONDS,
+                                               generatorQueue, runnable -> {
+            Thread thread = new Thread(runnable, "board-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Races get their own threads so they neither wait on nor hold up puzzle searches. Only tasks running on the
+        // generator pool race, so at most POOL_THREADS races are ever waiting for these threads.
+        int speculativeThreads = Math.max(1, SPECULATIVE_ATTEMPTS);
+        speculativePool = new ThreadPoolExecutor(speculativeThreads, speculativeThreads, 0L, TimeUnit.MILLISECONDS,
+                                                 new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "speculative-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final TaskRegistry<GeneratorTask> tasks =
+            new TaskRegistry<>(task -> Collections.singletonList(sizeKey(task.size)));
+    // Tasks with a non-zero seed by GeneratorTask.key, for requests to join
+    private static final Map<String, GeneratorTask> inFlight = new ConcurrentHashMap<>();
+
+    private static final BoardStore registryStore = new BoardStore() {
+        @Override
+        public void registerBoard(GameBoard gameBoard) {
+            BoardRegistry.getRegistry().registerBoard(gameBoard);
+        }
+
+        @Override
+        public void removeBoard(String boardId) {
+            BoardRegistry.getRegistry().removeBoard(boardId);
+        }
+    };
+    // How boards are generated and where they go once they're finished, only replaced by tests, see setTestHooks
+    private static volatile BiFunction<Board, Algorithm, Generator> generatorFactory = Generator::new;
+    private static volatile BoardStore boardStore = registryStore;
 
     // Discourage instantiation
     private BoardGenerator() {}
 
+    /**
+     * Where finished boards go, the BoardRegistry unless a test has replaced it.
+     */
+    interface BoardStore {
+        void registerBoard(GameBoard gameBoard);
+
+        void removeBoard(String boardId);
+    }
+
+    /**
+     * Replace how boards are generated and stored, so tests can control how long generation takes and run without a
+     * database.
+     * @param factory makes the generator for a board, or null for the real one
+     * @param store where finished boards go, or null for the BoardRegistry
+     */
+    static void setTestHooks(BiFunction<Board, Algorithm, Generator> factory, BoardStore store) {
+        generatorFactory = (factory != null) ? factory : Generator::new;
+        boardStore = (store != null) ? store : registryStore;
+    }
+
     /**
      * Kick off a generator running on the provided board.
      * @param size size of the board to generate
      * @param randomSeed random seed to be used, must be a valid see at this point
-     * @return a unique identifier for this board
+     * @param algorithm algorithm used to generate the board
+     * @param constraintSet rules the board follows
+     * @param priority scheduling class of the request
+     * @param finishProc called with the board once it's stored, or null
+     * @param failProc called instead of finishProc if the board is cancelled or can't be generated or stored, or null
+     * @return a unique identifier for this board, shared with any identical request that's still being generated
+     * @throws ServiceUnavailableException if too many boards are waiting to be generated already
      */
-    public static String generateBoard(int size, long randomSeed, Consumer<GameBoard> finishProc) {
-        GeneratorTask task = new GeneratorTask(size, randomSeed, finishProc);
+    public static String generateBoard(int size, long randomSeed, Algorithm algorithm, ConstraintSet constraintSet,
+                                       Priority priority, Consumer<GameBoard> finishProc, Runnable failProc) {
+        GeneratorTask task = new GeneratorTask(size, randomSeed, algorithm, constraintSet, priority, finishProc,
+                                               failProc);
         String boardId = task.getGameBoard().getBoardId();
-        synchronized (generatorLock) {
-            taskMap.put(boardId, task);
+        tasks.add(boardId, task);
+        // only plain board requests join, a finishProc belongs to its own task
+        GeneratorTask existing = (randomSeed != 0 && finishProc == null) ? join(task) : null;
+        if (existing != null) {
+            tasks.remove(boardId, task);
+            promote(existing, priority);
+            task = existing;
+        } else {
+            try {
+                task.start(); // call after adding to the registry to avoid race condition
+            } catch (RejectedExecutionException ree) {
+                task.settle();
+                removeTask(task);
+                throw new ServiceUnavailableException(RETRY_AFTER_SECONDS);
+            }
+        }
+        if (priority == Priority.INTERACTIVE && generatorQueue.contains(task)) {
+            preemptBackgroundTask();
+        }
+        return task.getGameBoard().getBoardId();
+    }
+
+    /**
+     * Find an identical task for a new one to join, or make the new task the one later requests join.
+     * @return the task to join, or null if there is none
+     */
+    private static GeneratorTask join(GeneratorTask task) {
+        while (true) {
+            GeneratorTask existing = inFlight.putIfAbsent(task.key, task);
+            if (existing == null || !existing.isSettled()) {
+                return existing;
+            }
+            // finished or cancelled, but not removed yet
+            inFlight.remove(task.key, existing);
+        }
+    }
+
+    /**
+     * Remove a task from the maps requests can find it in.
+     */
+    private static void removeTask(GeneratorTask task) {
+        tasks.remove(task.getGameBoard().getBoardId(), task);
+        inFlight.remove(task.key, task);
+    }
+
+    private static String sizeKey(int size) {
+        return "size=" + size;
+    }
+
+    /**
+     * Raise the priority of a queued board, for a puzzle request that joined the puzzle it's being generated for.
+     * @param boardId unique Id of the board
+     * @param priority priority of the joining request, lower priorities are ignored
+     */
+    static void promoteBoard(String boardId, Priority priority) {
+        GeneratorTask task = tasks.get(boardId);
+        if (task != null) {
+            promote(task, priority);
+        }
+    }
+
+    /**
+     * Raise the priority of a queued task a request has joined, so the request doesn't wait behind work it would
+     * have gone ahead of on its own.
+     */
+    private static void promote(GeneratorTask task, Priority priority) {
+        // the queue can't reorder a task in place, take it out first. Only one thread can take it out.
+        if (priority.compareTo(task.priority) < 0 && generatorQueue.remove(task)) {
+            task.priority = priority;
+            generatorQueue.requeue(task);
+        }
+    }
+
+    /**
+     * Stop generating a board. A queued board is taken off the queue, a running generator stops at its next loop
+     * check, and either way the board is never registered.
+     * @param boardId unique Id of the board to cancel
+     * @return true if the board was being generated, false if it wasn't found (it may have been registered already)
+     * @throws ClientErrorException with 409 Conflict if the board is being generated for a puzzle, only cancelling
+     * the puzzle may cancel its board
+     */
+    public static boolean cancelBoard(String boardId) {
+        GeneratorTask task = tasks.get(boardId);
+        if (task != null && task.finishProc != null) {
+            throw new ClientErrorException("Game board with id " + boardId + " is being generated for a puzzle,"
+                    + " delete the puzzle instead", Response.Status.CONFLICT);
+        }
+        return cancel(task);
+    }
+
+    /**
+     * Stop generating a puzzle's board, for PuzzleGenerator once it has cancelled the puzzle.
+     * @param boardId unique Id of the board to cancel
+     * @return true if the board was being generated
+     */
+    static boolean cancelPuzzleBoard(String boardId) {
+        return cancel(tasks.get(boardId));
+    }
+
+    private static boolean cancel(GeneratorTask task) {
+        if (task == null || !task.settle()) {
+            // not being generated, or already in the database
+            return false;
+        }
+        removeTask(task);
+        task.cancel();
+        if (generatorPool.remove(task)) {
+            // it will never run, so let the owner know now
+            task.fail();
+        }
+        return true;
+    }
+
+    /**
+     * Free a thread for a waiting interactive task by preempting the lowest priority, most recently submitted
+     * background or bulk task that's running and hasn't been preempted MAX_PREEMPTIONS times already.
+     */
+    private static void preemptBackgroundTask() {
+        synchronized (preemptible) {
+            GeneratorTask victim = null;
+            for (GeneratorTask task : preemptible) {
+                if (!task.preempted && task.preemptions < MAX_PREEMPTIONS
+                        && (victim == null || task.compareTo(victim) > 0)) {
+                    victim = task;
+                }
+            }
+            if (victim != null) {
+                victim.preemptions++;
+                victim.preempt();
+            }
         }
-        task.start(); // call after adding to map to avoid race condition
-        return boardId;
     }
 
     /**
      * Kick off generator using provided parameters. This version
      * allows specifying a random seed which produces the same results
-     * each time. Future results not guaranteed as the underlying
-     * algorithms may change.
+     * each time for a given algorithm. Future results not guaranteed as the
+     * underlying algorithms may change.
      * @param queryParams parameters containing board information for the generator
      * @return unique id for the board being generated
      */
     public static String generateBoard(QueryParams queryParams, Consumer<GameBoard> finishProc) {
         int size = 3;
         long randomSeed = 0;
+        Algorithm algorithm = Algorithm.BACKTRACK;
+        ConstraintSet constraintSet = ConstraintSet.CLASSIC;
+        Priority priority = Priority.INTERACTIVE;
         if (queryParams.hasSize()) {
             size = queryParams.getSize();
         }
         if (queryParams.hasRandomSeed()) {
             randomSeed = queryParams.getRandomSeed();
         }
-        return generateBoard(size, randomSeed, finishProc);
+        if (queryParams.hasAlgorithm()) {
+            algorithm = queryParams.getAlgorithm();
+        }
+        checkAlgorithmVersion(queryParams, algorithm);
+        if (queryParams.hasConstraintSet()) {
+            constraintSet = queryParams.getConstraintSet();
+        }
+        checkConstraintSet(size, algorithm, constraintSet);
+        if (queryParams.hasPriority()) {
+            priority = queryParams.getPriority();
+        }
+        return generateBoard(size, randomSeed, algorithm, constraintSet, priority, finishProc, null);
+    }
+
+    /**
+     * Only the current version of an algorithm can generate new boards, reject requests for any other version.
+     * @param queryParams request parameters
+     * @param algorithm algorithm that will be used for the request
+     * @throws BadRequestException if a different version of the algorithm was requested
+     */
+    static void checkAlgorithmVersion(QueryParams queryParams, Algorithm algorithm) {
+        if (queryParams.hasAlgorithmVersion() && queryParams.getAlgorithmVersion() != algorithm.getVersion()) {
+            throw new BadRequestException("Algorithm " + algorithm.getId() + " version "
+                    + queryParams.getAlgorithmVersion() + " is not available, current version is "
+                    + algorithm.getVersion());
+        }
+    }
+
+    /**
+     * Reject variant rules for sizes that would take too long, and for transform generation, which only knows how to
+     * keep rows, columns and blocks valid.
+     * @param size size of the board
+     * @param algorithm algorithm that will be used for the request
+     * @param constraintSet rules requested for the board
+     * @throws BadRequestException if boards with those rules can't be generated
+     */
+    static void checkConstraintSet(int size, Algorithm algorithm, ConstraintSet constraintSet) {
+        if (constraintSet == ConstraintSet.CLASSIC) {
+            return;
+        }
+        if (size > MAX_VARIANT_SIZE) {
+            throw new BadRequestException("The " + constraintSet.getId() + " constraint set is only available up to"
+                    + " size " + MAX_VARIANT_SIZE);
+        }
+        if (algorithm == Algorithm.TRANSFORM) {
+            throw new BadRequestException("Algorithm " + algorithm.getId() + " can't generate "
+                    + constraintSet.getId() + " boards");
+        }
     }
 
     /**
@@ -77,10 +389,7 @@ public class BoardGenerator {
      * @return GameBoard if it's being generated or null if it does not exist
      */
     public static GameBoard getBoard(String boardId) {
-        GeneratorTask task;
-        synchronized (generatorLock) {
-            task = taskMap.get(boardId);
-        }
+        GeneratorTask task = tasks.get(boardId);
         if (task == null) {
             return null;
         }
@@ -90,36 +399,41 @@ public class BoardGenerator {
     public static List<GameBoard> query(QueryParams queryParams) {
         ArrayList<GameBoard> outList = new ArrayList<>();
 
-        synchronized (generatorLock) {
-            taskMap.values().forEach(task -> {
-                GameBoard gb = task.getGameBoard();
-                if (gb.matchQuery(queryParams)) {
-                    if (!queryParams.checkSkip()) {
-                        outList.add(gb);
-                        // We can't break a forEach loop, without resorting to ugly hacks
-                        // this will set a kill flag when the limit is reached so we'll skip
-                        // anything past the limit
-                        queryParams.checkLimit();
-                    }
-                }
-            });
+        for (GeneratorTask task : tasks.indexed(indexKey(queryParams))) {
+            if (queryParams.isLimitReached()) {
+                break;
+            }
+            GameBoard gb = task.getGameBoard();
+            if (gb.matchQuery(queryParams) && !queryParams.checkSkip()) {
+                outList.add(gb);
+                queryParams.checkLimit();
+            }
         }
         return outList;
     }
 
     public static long count(QueryParams queryParams) {
-        // My kingdom for some real closures!!!
-        final long[] counts = new long[1];
-
-        synchronized (generatorLock) {
-            taskMap.values().forEach(task -> {
-                GameBoard gb = task.getGameBoard();
-                if (gb != null && gb.matchQuery(queryParams)) {
-                    counts[0]++;
-                }
-            });
+        String key = indexKey(queryParams);
+        if (!queryParams.hasRandomSeed() && !queryParams.hasAlgorithm() && !queryParams.hasAlgorithmVersion()
+                && !queryParams.hasConstraintSet()) {
+            // the index covers every filter that applies to boards
+            return tasks.count(key);
+        }
+
+        long count = 0;
+        for (GeneratorTask task : tasks.indexed(key)) {
+            if (task.getGameBoard().matchQuery(queryParams)) {
+                count++;
+            }
         }
-        return counts[0];
+        return count;
+    }
+
+    /**
+     * @return index key narrowing a query down, or null to search every task
+     */
+    private static String indexKey(QueryParams queryParams) {
+        return queryParams.hasSize() ? sizeKey(queryParams.getSize()) : null;
     }
     /**
      * Gets the progress of a generator.
@@ -128,60 +442,317 @@ public class BoardGenerator {
      * @throws IllegalArgumentException if boardId does not exist in task list
      */
     public static Integer getBoardProgress(String boardId) {
-        GeneratorTask task;
-        synchronized (generatorLock) {
-            task = taskMap.get(boardId);
-        }
+        GeneratorTask task = tasks.get(boardId);
         if (task == null) {
             return null;
         }
         return task.getProgress();
     }
 
-    private static class GeneratorTask {
-        private final Generator generator;
+    /**
+     * Gets the position of a board in the generator queue.
+     * @param boardId unique Id of the board to check
+     * @return position in the queue, 1 for the next board to start, 0 if generation has started, or null if the board
+     * is not being generated
+     */
+    public static Integer getQueuePosition(String boardId) {
+        GeneratorTask task = tasks.get(boardId);
+        if (task == null) {
+            return null;
+        }
+        // the queue iterates in no particular order, so count the tasks that will be handed out first
+        boolean queued = false;
+        int ahead = 0;
+        for (Runnable runnable : generatorQueue) {
+            if (runnable == task) {
+                queued = true;
+            } else if (((GeneratorTask) runnable).compareTo(task) < 0) {
+                ahead++;
+            }
+        }
+        return queued ? ahead + 1 : 0;
+    }
+
+    /**
+     * Generator pool work queue. Tasks come out in priority order, then in the order they were submitted. Interactive
+     * tasks are accepted until the queue holds limit tasks, background and bulk tasks only until it's half full.
+     */
+    private static class GeneratorQueue extends PriorityBlockingQueue<Runnable> {
+        private static final long serialVersionUID = 1L;
+
+        private final int limit;
+
+        GeneratorQueue(int limit) {
+            super(limit, (a, b) -> ((GeneratorTask) a).compareTo((GeneratorTask) b));
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable runnable) {
+            GeneratorTask task = (GeneratorTask) runnable;
+            int room = (task.priority == Priority.INTERACTIVE) ? limit : Math.max(1, limit / 2);
+            return size() < room && super.offer(task);
+        }
+
+        /**
+         * Put a preempted task back in line. It was accepted once already, so the limit doesn't apply.
+         */
+        synchronized void requeue(GeneratorTask task) {
+            super.offer(task);
+        }
+    }
+
+    /**
+     * Generates a single board on the generator pool.
+     *
+     * When any seed will do (random seed of zero) and the board is large enough for the generator's run time tail to
+     * matter, several generators with different seeds are raced on the speculative pool. The first to finish wins, the
+     * rest are cancelled and the winning seed is recorded on the GameBoard.
+     */
+    private static class GeneratorTask implements Runnable, Comparable<GeneratorTask> {
         private final GameBoard gameBoard;
-        private int progress;
-        private final Thread genThread;
-
-        GeneratorTask(final int size, final long randomSeed, final Consumer<GameBoard> finishProc) {
-            Board board = new Board(size, randomSeed);
-            generator = new Generator(board);
-            gameBoard = new GameBoard(size, randomSeed);
-
-            // spawn a thread to handle the generator
-            genThread = new Thread(() -> {
-                // Set the monitor to setProgress, so we can see how far along it is
-                progress = 0;
-                generator.setMonitor(this::setProgress);
-                if (!generator.generate()) {
-                    // Failed to generate board (???)
-                    synchronized (generatorLock) {
-                        // Remove the failed board so it doesn't appear in the list
-                        taskMap.remove(gameBoard.getBoardId());
+        private volatile int progress;
+        private final int size;
+        private final long randomSeed;
+        private final Algorithm algorithm;
+        private final ConstraintSet constraintSet;
+        private volatile Priority priority; // only changed while off the queue, see promote
+        private final long sequence;
+        private final Consumer<GameBoard> finishProc;
+        private final Runnable failProc;
+        private final String key; // identifies identical requests, see inFlight
+
+        // set when an interactive task needs this task's thread, see preempt
+        private volatile boolean preempted = false;
+        // times the task has been preempted, guarded by preemptible
+        private int preemptions = 0;
+        // set when the board is deleted while it's being generated, see cancel
+        private volatile boolean cancelled = false;
+        // set by whichever comes first, the board being stored or the task being cancelled
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+        // generators working on this task, so other threads can stop them. Guarded by itself.
+        private final List<Generator> generators = new ArrayList<>();
+
+        GeneratorTask(final int size, final long randomSeed, final Algorithm algorithm,
+                      final ConstraintSet constraintSet, final Priority priority,
+                      final Consumer<GameBoard> finishProc, final Runnable failProc) {
+            gameBoard = new GameBoard(size, randomSeed, algorithm, constraintSet);
+            this.size = size;
+            this.randomSeed = randomSeed;
+            this.algorithm = algorithm;
+            this.constraintSet = constraintSet;
+            this.priority = priority;
+            this.finishProc = finishProc;
+            this.failProc = failProc;
+            sequence = taskSequence.getAndIncrement();
+            key = size + "/" + randomSeed + "/" + algorithm.getId() + "/" + constraintSet.getId();
+        }
+
+        @Override
+        public void run() {
+            boolean done = false;
+            try {
+                done = generateAndStore();
+            } finally {
+                if (!done) {
+                    // Remove a failed board so it doesn't appear in the list, a cancelled one is gone already
+                    if (settle()) {
+                        removeTask(this);
                     }
-                    // FIXME: error reporting? put bad seeds in the DB?
-                    return;
+                    fail();
                 }
-                progress = 100;
+            }
+        }
 
-                gameBoard.setBoard(board.toIntArray());
-                if (randomSeed == 0) {
-                    // If zero random seed, get actual seed used
-                    gameBoard.setRandomSeed(board.getRandomSeed());
+        /**
+         * Generate the board, store it and hand it to finishProc.
+         * @return true if the board was handed on or the task was put back on the queue, false if it was cancelled or
+         * failed
+         */
+        private boolean generateAndStore() {
+            if (cancelled) {
+                return false;
+            }
+            progress = 0;
+            Board board;
+            // transform generation does no search, so there's nothing to gain by racing it. Background work doesn't
+            // race either, so it leaves the other cores alone and has a single generator to preempt.
+            if (priority == Priority.INTERACTIVE && randomSeed == 0 && size >= SPECULATIVE_MIN_SIZE
+                    && SPECULATIVE_ATTEMPTS > 1 && algorithm != Algorithm.TRANSFORM) {
+                board = generateSpeculative(size, algorithm, constraintSet);
+            } else if (priority == Priority.INTERACTIVE) {
+                board = generate(size, randomSeed, algorithm, constraintSet);
+            } else {
+                synchronized (preemptible) {
+                    preemptible.add(this);
+                }
+                board = generate(size, randomSeed, algorithm, constraintSet);
+                synchronized (preemptible) {
+                    preemptible.remove(this);
                 }
+                if (board == null && preempted && !cancelled) {
+                    // start over once the interactive work has had its turn
+                    preempted = false;
+                    progress = 0;
+                    generatorQueue.requeue(this);
+                    return true;
+                }
+            }
+            if (board == null) {
+                // Failed to generate board (???)
+                // FIXME: error reporting? put bad seeds in the DB?
+                return false;
+            }
+            progress = 100;
+
+            gameBoard.setBoard(board.toIntArray());
+            if (randomSeed == 0) {
+                // If zero random seed, get actual seed used
+                gameBoard.setRandomSeed(board.getRandomSeed());
+            }
 
-                // Move from taskMap to database
-                synchronized (generatorLock) {
-                    BoardRegistry.getRegistry().registerBoard(gameBoard);
-                    taskMap.remove(gameBoard.getBoardId());
+            // Move from the task registry to the database, in that order so the board is always in one of them
+            if (cancelled) {
+                // deleted while we were busy, it's already gone from the task registry
+                return false;
+            }
+            boolean stored = false;
+            try {
+                boardStore.registerBoard(gameBoard);
+                stored = true;
+            } finally {
+                // even if the database failed, so identical requests don't keep joining a dead task
+                if (settle()) {
+                    removeTask(this);
+                } else if (stored) {
+                    // deleted while it was being stored, too late for cancelBoard to stop it
+                    boardStore.removeBoard(gameBoard.getBoardId());
                 }
+            }
+            if (cancelled) {
+                return false;
+            }
+
+            // call finishProc if set
+            if (finishProc != null) {
+                finishProc.accept(gameBoard);
+            }
+            return true;
+        }
+
+        /**
+         * Tell the owner the board won't be finished. May be called more than once.
+         */
+        void fail() {
+            if (failProc != null) {
+                failProc.run();
+            }
+        }
+
+        private Board generate(int size, long randomSeed, Algorithm algorithm, ConstraintSet constraintSet) {
+            Board board = new Board(size, randomSeed, constraintSet);
+            Generator generator = generatorFactory.apply(board, algorithm);
+            // Set the monitor to setProgress, so we can see how far along it is
+            generator.setMonitor(this::setProgress);
+            track(generator);
+            try {
+                return generator.generate() ? board : null;
+            } finally {
+                untrack(generator);
+            }
+        }
+
+        /**
+         * Stop this task's generator, from any thread. It returns at its next loop check and the task goes back on
+         * the queue.
+         */
+        void preempt() {
+            preempted = true;
+            stopGenerators();
+        }
 
-                // call finishProc if set
-                if (finishProc != null) {
-                    finishProc.accept(gameBoard);
+        /**
+         * Claim the task's outcome for the caller, either storing the board or cancelling it.
+         * @return true if nothing else has claimed it yet
+         */
+        boolean settle() {
+            return settled.compareAndSet(false, true);
+        }
+
+        boolean isSettled() {
+            return settled.get();
+        }
+
+        /**
+         * Stop this task for good, from any thread. Only called after settling it.
+         */
+        void cancel() {
+            cancelled = true;
+            stopGenerators();
+        }
+
+        @Override
+        public int compareTo(GeneratorTask other) {
+            int order = priority.compareTo(other.priority);
+            return (order != 0) ? order : Long.compare(sequence, other.sequence);
+        }
+
+        private Board generateSpeculative(int size, Algorithm algorithm, ConstraintSet constraintSet) {
+            List<Callable<Board>> attempts = new ArrayList<>(SPECULATIVE_ATTEMPTS);
+            for (int ii = 0; ii < SPECULATIVE_ATTEMPTS; ii++) {
+                // each generator picks its own random seed
+                Board board = new Board(size, 0, constraintSet);
+                Generator generator = generatorFactory.apply(board, algorithm);
+                generator.setMonitor(this::updateProgress);
+                track(generator);
+                attempts.add(() -> {
+                    if (!generator.generate()) {
+                        throw new IllegalStateException("Board generation failed with seed " + board.getRandomSeed());
+                    }
+                    return board;
+                });
+            }
+
+            try {
+                return speculativePool.invokeAny(attempts);
+            } catch (ExecutionException e) {
+                // every attempt failed
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                // stop the losers
+                synchronized (generators) {
+                    generators.forEach(Generator::cancel);
+                    generators.clear();
                 }
-            });
+            }
+        }
+
+        /**
+         * Make a generator stoppable by preempt and cancel. One that's added after either was called is stopped
+         * straight away.
+         */
+        private void track(Generator generator) {
+            synchronized (generators) {
+                generators.add(generator);
+                if (preempted || cancelled) {
+                    generator.cancel();
+                }
+            }
+        }
+
+        private void untrack(Generator generator) {
+            synchronized (generators) {
+                generators.remove(generator);
+            }
+        }
+
+        private void stopGenerators() {
+            synchronized (generators) {
+                generators.forEach(Generator::cancel);
+            }
         }
 
         GameBoard getGameBoard() {
@@ -189,10 +760,7 @@ public class BoardGenerator {
         }
 
         void start() {
-            // FIXME: Remove magic seed for production
-            if (gameBoard.getRandomSeed() != 8675309L) {
-                genThread.start();
-            }
+            generatorPool.execute(this);
         }
 
         int getProgress() {
@@ -202,5 +770,14 @@ public class BoardGenerator {
         void setProgress(int progress) {
             this.progress = progress;
         }
+
+        /**
+         * Progress of the furthest along speculative generator.
+         */
+        void updateProgress(int progress) {
+            if (progress > this.progress) {
+                this.progress = progress;
+            }
+        }
     }
 }
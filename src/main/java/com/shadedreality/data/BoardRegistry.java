@@ -26,6 +26,8 @@ import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.ConstraintSet;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
@@ -81,6 +83,35 @@ public final class BoardRegistry {
                 filters.add(Filters.eq("randomSeed", params.getRandomSeed()));
             }
 
+            if (params.hasAlgorithm()) {
+                String algorithm = params.getAlgorithm().getId();
+                Bson filter = Filters.eq("algorithm", algorithm);
+                if (Algorithm.LEGACY_ID.equals(algorithm)) {
+                    // boards stored before algorithms were recorded don't have the field
+                    filter = Filters.or(filter, Filters.exists("algorithm", false));
+                }
+                filters.add(filter);
+            }
+
+            if (params.hasAlgorithmVersion()) {
+                int version = params.getAlgorithmVersion();
+                Bson filter = Filters.eq("algorithmVersion", version);
+                if (version == Algorithm.LEGACY_VERSION) {
+                    filter = Filters.or(filter, Filters.exists("algorithmVersion", false));
+                }
+                filters.add(filter);
+            }
+
+            if (params.hasConstraintSet()) {
+                String constraintSet = params.getConstraintSet().getId();
+                Bson filter = Filters.eq("constraintSet", constraintSet);
+                if (ConstraintSet.CLASSIC.getId().equals(constraintSet)) {
+                    // boards stored before constraint sets were recorded don't have the field
+                    filter = Filters.or(filter, Filters.exists("constraintSet", false));
+                }
+                filters.add(filter);
+            }
+
             if (!filters.isEmpty()) {
                 return Filters.and(filters);
             }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+/**
+ * POJO class used to send the result of checking an answer to a puzzle over the wire.
+ */
+public class CheckResult {
+    private int[] wrong;        // indices of filled in cells that don't match the solution
+    private int[] conflicts;    // indices of cells that share a value with another cell of one of their groups
+    private int remaining;      // cells still empty, not counting the givens
+    private boolean complete;   // every cell is filled in and matches the solution
+
+    CheckResult(int[] wrong, int[] conflicts, int remaining) {
+        this.wrong = wrong;
+        this.conflicts = conflicts;
+        this.remaining = remaining;
+        complete = remaining == 0 && wrong.length == 0;
+    }
+
+    CheckResult() {
+        wrong = new int[0];
+        conflicts = new int[0];
+        remaining = 0;
+        complete = false;
+    }
+
+    public int[] getWrong() {
+        return wrong.clone();
+    }
+
+    public void setWrong(int[] wrong) {
+        this.wrong = wrong.clone();
+    }
+
+    public int[] getConflicts() {
+        return conflicts.clone();
+    }
+
+    public void setConflicts(int[] conflicts) {
+        this.conflicts = conflicts.clone();
+    }
+
+    public int getRemaining() {
+        return remaining;
+    }
+
+    public void setRemaining(int remaining) {
+        this.remaining = remaining;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+}
@@ -21,7 +21,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
-import com.shadedreality.sudokugen.Board;
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.ConstraintSet;
 import org.bson.codecs.pojo.annotations.BsonDiscriminator;
 
 import java.util.ArrayList;
@@ -41,23 +42,40 @@ public class GameBoard {
     private long randomSeed;
     private int[] board;
     private String boardId;
+    private String algorithm;
+    private int algorithmVersion;
+    private String constraintSet;
 
     public GameBoard() {
         size = 3;
         randomSeed = 0;
         board = new int[0]; // start with empty array
         boardId = UUID.randomUUID().toString();
+        // anything stored without an algorithm came from the original generator
+        algorithm = Algorithm.LEGACY_ID;
+        algorithmVersion = Algorithm.LEGACY_VERSION;
+        constraintSet = ConstraintSet.CLASSIC.getId();
     }
 
-    public GameBoard(int size, long randomSeed) {
+    public GameBoard(int size, long randomSeed, Algorithm algorithm) {
+        this(size, randomSeed, algorithm, ConstraintSet.CLASSIC);
+    }
+
+    public GameBoard(int size, long randomSeed, Algorithm algorithm, ConstraintSet constraintSet) {
         this();
         this.size = size;
         this.randomSeed = randomSeed;
+        this.algorithm = algorithm.getId();
+        this.algorithmVersion = algorithm.getVersion();
+        this.constraintSet = constraintSet.getId();
     }
 
     public GameBoard(GameBoard copy) {
         size = copy.getSize();
         randomSeed = copy.getRandomSeed();
+        algorithm = copy.getAlgorithm();
+        algorithmVersion = copy.getAlgorithmVersion();
+        constraintSet = copy.getConstraintSet();
         board = copy.getBoard(); // already a clone, no need to copy
         boardId = UUID.randomUUID().toString(); // copy gets unique id
     }
@@ -79,6 +97,36 @@ public class GameBoard {
         this.randomSeed = randomSeed;
     }
 
+    /**
+     * @return id of the algorithm used to generate this board, see {@link Algorithm}
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getAlgorithmVersion() {
+        return algorithmVersion;
+    }
+
+    public void setAlgorithmVersion(int algorithmVersion) {
+        this.algorithmVersion = algorithmVersion;
+    }
+
+    /**
+     * @return id of the rules this board follows, see {@link ConstraintSet}
+     */
+    public String getConstraintSet() {
+        return constraintSet;
+    }
+
+    public void setConstraintSet(String constraintSet) {
+        this.constraintSet = constraintSet;
+    }
+
     public int[] getBoard() {
         return board.clone();
     }
@@ -125,7 +173,7 @@ public class GameBoard {
 
     /**
      * Check if this board matches a set of parameters.
-     * Right now, only size and randomSeed are supported
+     * Right now, only size, randomSeed, the algorithm and the constraint set are supported
      * @param params Map containing query parameters to match
      * @return true if ALL relevant parameters match this board, false otherwise
      */
@@ -138,6 +186,18 @@ public class GameBoard {
             if (params.hasRandomSeed() && (params.getRandomSeed() != randomSeed)) {
                 return false;
             }
+
+            if (params.hasAlgorithm() && !params.getAlgorithm().getId().equals(algorithm)) {
+                return false;
+            }
+
+            if (params.hasAlgorithmVersion() && (params.getAlgorithmVersion() != algorithmVersion)) {
+                return false;
+            }
+
+            if (params.hasConstraintSet() && !params.getConstraintSet().getId().equals(constraintSet)) {
+                return false;
+            }
         }
         return true;
     }
@@ -28,12 +28,16 @@ public class ListInfo {
     public String id; // board or puzzle ID
     public int size;  // size of board or puzzle
     public long randomSeed; // random seed used to generate the board or puzzle
+    public String algorithm; // algorithm used to generate the board
+    public int algorithmVersion; // version of that algorithm
 
     @JsonIgnore
     public ListInfo(Puzzle puzzle) {
         id = puzzle.getPuzzleId();
         size = puzzle.getSize();
         randomSeed = puzzle.getRandomSeed();
+        algorithm = puzzle.getAlgorithm();
+        algorithmVersion = puzzle.getAlgorithmVersion();
     }
 
     @JsonIgnore
@@ -41,12 +45,16 @@ public class ListInfo {
         id = board.getBoardId();
         size = board.getSize();
         randomSeed = board.getRandomSeed();
+        algorithm = board.getAlgorithm();
+        algorithmVersion = board.getAlgorithmVersion();
     }
 
     ListInfo() {
         id = null;
         size = 0;
         randomSeed = 0;
+        algorithm = null;
+        algorithmVersion = 0;
     }
 
     public String getId() {
@@ -73,5 +81,21 @@ public class ListInfo {
     public void setRandomSeed(long seed) {
         randomSeed = seed;
     }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getAlgorithmVersion() {
+        return algorithmVersion;
+    }
+
+    public void setAlgorithmVersion(int algorithmVersion) {
+        this.algorithmVersion = algorithmVersion;
+    }
 }
 
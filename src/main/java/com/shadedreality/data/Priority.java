@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+/**
+ * Scheduling classes for generation requests. The generator pool always hands out interactive work first, and
+ * background and bulk work gives up its thread when an interactive request is left waiting, see BoardGenerator.
+ */
+public enum Priority {
+    /**
+     * A user is waiting on the result.
+     */
+    INTERACTIVE("interactive"),
+
+    /**
+     * Prefilling the registry ahead of demand.
+     */
+    BACKGROUND("background"),
+
+    /**
+     * Large batch jobs such as catalog builds, only run when nothing else needs the pool.
+     */
+    BULK("bulk");
+
+    private final String id;
+
+    Priority(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the identifier used for this priority in the REST API
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Look up a priority by identifier.
+     * @param id priority identifier, case insensitive
+     * @return the matching Priority
+     * @throws IllegalArgumentException if there is no priority with that identifier
+     */
+    public static Priority fromId(String id) {
+        for (Priority priority : values()) {
+            if (priority.id.equalsIgnoreCase(id)) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Unknown priority: " + id);
+    }
+}
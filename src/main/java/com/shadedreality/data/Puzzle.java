@@ -21,6 +21,10 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.ConstraintSet;
+import com.shadedreality.sudokugen.Symmetry;
+import com.shadedreality.sudokugen.Technique;
 
 import java.util.UUID;
 
@@ -32,24 +36,40 @@ public class Puzzle {
     private int size;
     private long randomSeed;
     private int difficulty;
+    private String technique;
+    private boolean sparse;
+    private String symmetry;
     private int[] board;
     private int[] puzzle;
     private String puzzleId;
+    private String algorithm;
+    private int algorithmVersion;
+    private String constraintSet;
 
     private Puzzle() {
         size = 3;
         randomSeed = 0;
         difficulty = 3;
+        technique = null; // not rated yet
+        sparse = false;
+        symmetry = Symmetry.NONE.getId();
         board = new int[0];  // empty board until generated
         puzzle = new int[0]; // empty puzzle until generated
         puzzleId = UUID.randomUUID().toString();
+        // anything stored without an algorithm came from the original generator
+        algorithm = Algorithm.LEGACY_ID;
+        algorithmVersion = Algorithm.LEGACY_VERSION;
+        constraintSet = ConstraintSet.CLASSIC.getId();
     }
 
-    Puzzle(int size, long randomSeed, int difficulty) {
+    Puzzle(int size, long randomSeed, int difficulty, Algorithm algorithm, ConstraintSet constraintSet) {
         this();
         this.size = size;
         this.randomSeed = randomSeed;
         this.difficulty = difficulty;
+        this.algorithm = algorithm.getId();
+        this.algorithmVersion = algorithm.getVersion();
+        this.constraintSet = constraintSet.getId();
     }
 
     public int getSize() {
@@ -82,6 +102,40 @@ public class Puzzle {
         this.difficulty = difficulty;
     }
 
+    /**
+     * @return id of the hardest technique needed to solve this puzzle, see {@link Technique}, or null if the puzzle
+     *         has not been rated
+     */
+    public String getTechnique() {
+        return technique;
+    }
+
+    public void setTechnique(String technique) {
+        this.technique = technique;
+    }
+
+    /**
+     * @return true if this puzzle was searched for with as few clues as possible, rather than carved once
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    /**
+     * @return id of the symmetry of the clue layout, see {@link Symmetry}
+     */
+    public String getSymmetry() {
+        return symmetry;
+    }
+
+    public void setSymmetry(String symmetry) {
+        this.symmetry = symmetry;
+    }
+
     public void setBoard(int[] board) {
         this.board = board.clone();
     }
@@ -102,6 +156,36 @@ public class Puzzle {
         return puzzleId;
     }
 
+    /**
+     * @return id of the algorithm used to generate the board for this puzzle, see {@link Algorithm}
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getAlgorithmVersion() {
+        return algorithmVersion;
+    }
+
+    public void setAlgorithmVersion(int algorithmVersion) {
+        this.algorithmVersion = algorithmVersion;
+    }
+
+    /**
+     * @return id of the rules the board and puzzle follow, see {@link ConstraintSet}
+     */
+    public String getConstraintSet() {
+        return constraintSet;
+    }
+
+    public void setConstraintSet(String constraintSet) {
+        this.constraintSet = constraintSet;
+    }
+
     @JsonIgnore
     public static Puzzle getDemoPuzzle(int size) {
         Puzzle p = new Puzzle();
@@ -154,7 +238,8 @@ public class Puzzle {
 
     /**
      * Check if this puzzle matches a set of parameters.
-     * Right now, only size and randomSeed are supported
+     * Right now, only size, randomSeed, difficulty, the algorithm, the constraint set, sparse and symmetry are
+     * supported
      * @param params Map containing query parameters to match
      * @return true if ALL relevant parameters match this puzzle, false otherwise
      */
@@ -171,6 +256,26 @@ public class Puzzle {
             if (params.hasDifficulty() && (params.getDifficulty() != difficulty)) {
                 return false;
             }
+
+            if (params.hasAlgorithm() && !params.getAlgorithm().getId().equals(algorithm)) {
+                return false;
+            }
+
+            if (params.hasAlgorithmVersion() && (params.getAlgorithmVersion() != algorithmVersion)) {
+                return false;
+            }
+
+            if (params.hasConstraintSet() && !params.getConstraintSet().getId().equals(constraintSet)) {
+                return false;
+            }
+
+            if (params.hasSparse() && (params.getSparse() != sparse)) {
+                return false;
+            }
+
+            if (params.hasSymmetry() && !params.getSymmetry().getId().equals(symmetry)) {
+                return false;
+            }
         }
         return true;
     }
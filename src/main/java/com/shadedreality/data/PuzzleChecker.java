@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+import com.shadedreality.sudokugen.Board;
+import com.shadedreality.sudokugen.BoardValidator;
+import com.shadedreality.sudokugen.ConstraintSet;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Checks answers to puzzles against their solutions, so clients don't need the solution to tell a player what they
+ * got wrong.
+ *
+ * Solutions are kept in a cache packed into a bit set of cells for each value, with the givens as another bit set, so
+ * finding wrong cells is a few ANDs per value for every 64 cells. Finished puzzles are added to the cache as they're
+ * generated and others are loaded from the registry the first time they're checked, so checks normally never touch
+ * the database. SOLUTION_CACHE_SIZE sets how many solutions are kept (default 10000).
+ *
+ * The cache is a concurrent map, so checks never lock. Each solution records when it was last checked, and when the
+ * cache grows past its size the least recently checked tenth is dropped in one pass, which keeps it close to LRU.
+ */
+public class PuzzleChecker {
+    private static final int CACHE_SIZE;
+    // Size the cache is trimmed back to once it's full
+    private static final int TRIM_SIZE;
+    // Checks within this long of the last one don't update its time, so popular puzzles don't keep writing to it
+    private static final long TOUCH_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    static {
+        Optional<String> cacheSize = Optional.ofNullable(System.getenv("SOLUTION_CACHE_SIZE"));
+        CACHE_SIZE = Math.max(1, cacheSize.map(Integer::valueOf).orElse(10000));
+        TRIM_SIZE = CACHE_SIZE - CACHE_SIZE / 10;
+    }
+
+    private static final ConcurrentMap<String, PackedSolution> cache = new ConcurrentHashMap<>();
+    // Held by the thread trimming the cache, the others don't wait for it
+    private static final ReentrantLock trimming = new ReentrantLock();
+    // Bumped after every delete, so a solution loaded from the registry before a delete is never cached after it
+    private static final AtomicLong removals = new AtomicLong();
+
+    // Validators by constraint set and size, built once per thread since they aren't thread safe
+    private static final ThreadLocal<BoardValidator[]> validators = ThreadLocal.withInitial(
+            () -> new BoardValidator[ConstraintSet.values().length * (Board.MAX_BOARD_SIZE + 1)]);
+
+    // Discourage instantiation
+    private PuzzleChecker() {}
+
+    /**
+     * Check a partial answer to a puzzle. Givens may be left empty, they're filled in before checking for conflicts,
+     * but a given that's changed counts as wrong.
+     * @param puzzleId unique Id of the puzzle
+     * @param grid the answer so far, values 0 to (size*size)-1 with -1 for empty cells
+     * @return wrong and conflicting cells and how many cells are left
+     * @throws NotFoundException if the puzzle doesn't exist or hasn't finished generating
+     * @throws BadRequestException if the grid doesn't fit the puzzle
+     */
+    public static CheckResult check(String puzzleId, int[] grid) {
+        PackedSolution solution = getSolution(puzzleId);
+        if (grid == null) {
+            throw new BadRequestException("No grid to check");
+        }
+        if (grid.length != solution.cellCount) {
+            throw new BadRequestException("Grid has " + grid.length + " cells, expected " + solution.cellCount);
+        }
+        return solution.check(grid);
+    }
+
+    /**
+     * Add a finished puzzle to the cache.
+     */
+    static void remember(Puzzle puzzle) {
+        cache.put(puzzle.getPuzzleId(), new PackedSolution(puzzle));
+        trim();
+    }
+
+    /**
+     * Drop a deleted puzzle from the cache. Call after it's gone from the registry, so a check that loads it while
+     * it's being deleted can't put it back.
+     */
+    static void forget(String puzzleId) {
+        removals.incrementAndGet();
+        cache.remove(puzzleId);
+    }
+
+    private static PackedSolution getSolution(String puzzleId) {
+        PackedSolution solution = cache.get(puzzleId);
+        if (solution != null) {
+            solution.touch();
+            return solution;
+        }
+
+        if (PuzzleGenerator.getPuzzle(puzzleId) != null) {
+            throw new NotFoundException("Puzzle with id " + puzzleId + " is being generated still");
+        }
+        long removalsBefore = removals.get();
+        Puzzle pz = PuzzleRegistry.getRegistry().getPuzzle(puzzleId);
+        if (pz == null || pz.getBoard().length == 0) {
+            throw new NotFoundException("Puzzle with id " + puzzleId + " does not exist");
+        }
+        // if two threads miss at once they both load it, which does no harm
+        solution = new PackedSolution(pz);
+        cache.put(puzzleId, solution);
+        if (removals.get() != removalsBefore) {
+            // something was deleted meanwhile, maybe this puzzle, so don't keep what may be a stale copy. Whichever
+            // of this and forget removes it second finds it gone already.
+            cache.remove(puzzleId, solution);
+        } else {
+            trim();
+        }
+        return solution;
+    }
+
+    /**
+     * Drop the least recently checked solutions once the cache is over size. Only one thread trims at a time, the
+     * cache may go over size a little while it does.
+     */
+    private static void trim() {
+        if (cache.size() <= CACHE_SIZE || !trimming.tryLock()) {
+            return;
+        }
+        try {
+            long[] lastChecked = cache.values().stream().mapToLong(solution -> solution.lastChecked).toArray();
+            int excess = lastChecked.length - TRIM_SIZE;
+            if (excess <= 0) {
+                return;
+            }
+            Arrays.sort(lastChecked);
+            long cutoff = lastChecked[excess - 1];
+            cache.values().removeIf(solution -> solution.lastChecked <= cutoff);
+        } finally {
+            trimming.unlock();
+        }
+    }
+
+    private static BoardValidator getValidator(int size, ConstraintSet constraintSet) {
+        BoardValidator[] threadValidators = validators.get();
+        int index = constraintSet.ordinal() * (Board.MAX_BOARD_SIZE + 1) + size;
+        if (threadValidators[index] == null) {
+            threadValidators[index] = new BoardValidator(size, constraintSet);
+        }
+        return threadValidators[index];
+    }
+
+    /**
+     * A puzzle's solution and givens, immutable once built apart from when it was last checked.
+     */
+    private static class PackedSolution {
+        private final int size;
+        private final int cellCount;
+        private final ConstraintSet constraintSet;
+        // bit set of the cells holding each value
+        private final long[][] valueCells;
+        private final long[] givens;
+        // the solution a byte per cell, to fill in givens left empty
+        private final byte[] values;
+        // System.nanoTime of the last check, roughly, see touch
+        private volatile long lastChecked = System.nanoTime();
+
+        PackedSolution(Puzzle puzzle) {
+            size = puzzle.getSize();
+            constraintSet = ConstraintSet.fromId(puzzle.getConstraintSet());
+            int[] board = puzzle.getBoard();
+            int[] mask = puzzle.getPuzzle();
+            cellCount = board.length;
+            int words = (cellCount + 63) / 64;
+            valueCells = new long[size * size][words];
+            givens = new long[words];
+            values = new byte[cellCount];
+            for (int cell = 0; cell < cellCount; cell++) {
+                valueCells[board[cell]][cell >> 6] |= 1L << cell;
+                values[cell] = (byte) board[cell];
+                if (cell < mask.length && mask[cell] != 0) {
+                    givens[cell >> 6] |= 1L << cell;
+                }
+            }
+        }
+
+        void touch() {
+            long now = System.nanoTime();
+            if (now - lastChecked > TOUCH_NANOS) {
+                lastChecked = now;
+            }
+        }
+
+        CheckResult check(int[] answer) {
+            int digits = size * size;
+            int words = givens.length;
+            int[] grid = new int[cellCount];
+            long[][] answerCells = new long[digits][words];
+            long[] empty = new long[words];
+            for (int cell = 0; cell < cellCount; cell++) {
+                int value = answer[cell];
+                if (value < -1 || value >= digits) {
+                    throw new BadRequestException("Invalid value " + value + " in cell " + cell);
+                }
+                long bit = 1L << cell;
+                if (value == -1) {
+                    empty[cell >> 6] |= bit;
+                    grid[cell] = ((givens[cell >> 6] & bit) != 0) ? values[cell] : -1;
+                } else {
+                    answerCells[value][cell >> 6] |= bit;
+                    grid[cell] = value;
+                }
+            }
+
+            // a cell is wrong if it holds a value the solution doesn't have there
+            long[] wrongCells = new long[words];
+            int wrongCount = 0;
+            int remaining = 0;
+            for (int word = 0; word < words; word++) {
+                long wrongWord = 0;
+                for (int value = 0; value < digits; value++) {
+                    wrongWord |= answerCells[value][word] & ~valueCells[value][word];
+                }
+                wrongCells[word] = wrongWord;
+                wrongCount += Long.bitCount(wrongWord);
+                remaining += Long.bitCount(empty[word] & ~givens[word]);
+            }
+            int[] wrong = new int[wrongCount];
+            int next = 0;
+            for (int word = 0; word < words; word++) {
+                for (long bits = wrongCells[word]; bits != 0; bits &= bits - 1) {
+                    wrong[next++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+            }
+
+            int[] conflicts = getValidator(size, constraintSet).findConflicts(grid);
+            return new CheckResult(wrong, conflicts, remaining);
+        }
+    }
+}
@@ -17,17 +17,99 @@
 
 package com.shadedreality.data;
 
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.ConstraintSet;
+import com.shadedreality.sudokugen.DifficultyRater;
+import com.shadedreality.sudokugen.DifficultyRating;
+import com.shadedreality.sudokugen.PuzzleCarver;
+import com.shadedreality.sudokugen.SparseCarver;
+import com.shadedreality.sudokugen.Symmetry;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
- * Puzzle generator. Handles puzzle generation asynchronously.
+ * Puzzle generator. Handles puzzle generation asynchronously. Boards for puzzles are generated on the BoardGenerator
+ * pool, and the puzzle is carved on the same thread once its board is done.
+ *
+ * A request with a non-zero random seed that matches a puzzle already being generated in every parameter joins that
+ * puzzle and gets the same puzzle ID back, so a spike of requests for the same seed generates it once.
  *
- * TODO: Create generator executor pool to avoid overloading the system.
+ * Puzzles being generated are kept in a TaskRegistry indexed by size and requested difficulty, so polling for status
+ * never takes a lock and counting by size and difficulty is constant time. As in BoardGenerator, a finished puzzle is
+ * registered in the database before it leaves the TaskRegistry, and finishing and cancelling are settled by a single
+ * compare and set on the task.
  */
 public class PuzzleGenerator {
-    // Used to synchronize access to tasks
-    private static final Object puzzleGenLock = new Object();
-    private static Map<String, PuzzleTask> taskMap = Collections.synchronizedMap(new HashMap<>());
+    // Puzzles with a requested difficulty are searched for by this many workers for up to this long, see
+    // DifficultySearch. Every search shares the same TARGET_WORKERS threads.
+    private static final int TARGET_WORKERS;
+    private static final long TARGET_BUDGET_MS;
+    private static final ThreadPoolExecutor targetPool;
+    // Puzzles of at least this size are carved with this many uniqueness checks at once, see PuzzleCarver
+    private static final int PARALLEL_CARVE_MIN_SIZE = 4;
+    private static final int CARVE_WORKERS;
+    // Sparse puzzles are searched for on their own pool of low priority threads, for this long. At most
+    // SPARSE_QUEUE_LIMIT more are accepted, counting from the request, see sparseSlots.
+    private static final int SPARSE_WORKERS;
+    private static final long SPARSE_BUDGET_MS;
+    private static final int SPARSE_QUEUE_LIMIT;
+    private static final ThreadPoolExecutor sparsePool;
+    // Sparse puzzles accepted and not finished yet, whether their board is still being generated or not
+    private static final AtomicInteger sparseSlots = new AtomicInteger();
+
+    static {
+        int defaultWorkers = Runtime.getRuntime().availableProcessors();
+        Optional<String> workers = Optional.ofNullable(System.getenv("GEN_TARGET_WORKERS"));
+        TARGET_WORKERS = Math.max(1, workers.map(Integer::valueOf).orElse(defaultWorkers));
+        Optional<String> budget = Optional.ofNullable(System.getenv("GEN_TARGET_BUDGET_MS"));
+        TARGET_BUDGET_MS = budget.map(Long::valueOf).orElse(2000L);
+        Optional<String> carveWorkers = Optional.ofNullable(System.getenv("GEN_CARVE_WORKERS"));
+        CARVE_WORKERS = Math.max(1, carveWorkers.map(Integer::valueOf).orElse(defaultWorkers));
+        Optional<String> sparseWorkers = Optional.ofNullable(System.getenv("GEN_SPARSE_WORKERS"));
+        SPARSE_WORKERS = Math.max(1, sparseWorkers.map(Integer::valueOf).orElse(1));
+        Optional<String> sparseBudget = Optional.ofNullable(System.getenv("GEN_SPARSE_BUDGET_MS"));
+        SPARSE_BUDGET_MS = sparseBudget.map(Long::valueOf).orElse(10000L);
+        Optional<String> sparseQueueLimit = Optional.ofNullable(System.getenv("GEN_SPARSE_QUEUE_LIMIT"));
+        SPARSE_QUEUE_LIMIT = Math.max(1, sparseQueueLimit.map(Integer::valueOf).orElse(8));
+
+        // Searches run from generator pool threads, so at most one per generator thread is waiting for these
+        targetPool = new ThreadPoolExecutor(TARGET_WORKERS, TARGET_WORKERS, 0L, TimeUnit.MILLISECONDS,
+                                            new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "difficulty-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // the search uses all of its budget, so keep it out of the way of everything else
+        sparsePool = new ThreadPoolExecutor(SPARSE_WORKERS, SPARSE_WORKERS, 0L, TimeUnit.MILLISECONDS,
+                                            new ArrayBlockingQueue<>(SPARSE_QUEUE_LIMIT), runnable -> {
+            Thread thread = new Thread(runnable, "sparse-puzzle");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Indexed by the difficulty requested, puzzles finishing at another difficulty leave the registry straight away
+    private static final TaskRegistry<PuzzleTask> tasks = new TaskRegistry<>(task -> {
+        int size = task.getPuzzle().getSize();
+        int difficulty = task.getPuzzle().getDifficulty();
+        return Arrays.asList(sizeKey(size), difficultyKey(difficulty), sizeKey(size) + "/" + difficultyKey(difficulty));
+    });
+    // Tasks with a non-zero seed by PuzzleTask.key, for requests to join
+    private static final Map<String, PuzzleTask> inFlight = new ConcurrentHashMap<>();
 
     // Discourage instantiation
     private PuzzleGenerator() {}
@@ -35,12 +117,20 @@ public class PuzzleGenerator {
     /**
      * Kick off a generator running using the query parameters from a REST call.
      * @param queryParams parameters for the generator to use to generate the puzzle
-     * @return a unique identifier for this puzzle
+     * @return a unique identifier for this puzzle, shared with any identical request that's still being generated
+     * @throws ServiceUnavailableException if too many boards, or for a sparse puzzle too many sparse searches, are
+     * waiting already
      */
     public static String generatePuzzle(QueryParams queryParams) {
         int size = 3;
         long randomSeed = 0;
         int difficulty = 4;
+        Integer targetDifficulty = null;
+        boolean sparse = false;
+        Symmetry symmetry = Symmetry.NONE;
+        Algorithm algorithm = Algorithm.BACKTRACK;
+        ConstraintSet constraintSet = ConstraintSet.CLASSIC;
+        Priority priority = Priority.INTERACTIVE;
         PuzzleTask task;
         String puzzleId;
 
@@ -52,12 +142,63 @@ public class PuzzleGenerator {
         }
         if (queryParams.hasDifficulty()) {
             difficulty = queryParams.getDifficulty();
+            if (difficulty < DifficultyRater.MIN_DIFFICULTY || difficulty > DifficultyRater.MAX_DIFFICULTY) {
+                throw new BadRequestException("Difficulty must be " + DifficultyRater.MIN_DIFFICULTY + "-"
+                        + DifficultyRater.MAX_DIFFICULTY);
+            }
+            targetDifficulty = difficulty;
+        }
+        if (queryParams.hasSparse()) {
+            sparse = queryParams.getSparse();
         }
-        task = new PuzzleTask(size, randomSeed, difficulty);
+        if (queryParams.hasSymmetry()) {
+            symmetry = queryParams.getSymmetry();
+            if (sparse && symmetry != Symmetry.NONE) {
+                throw new BadRequestException("Sparse puzzles can't have a symmetric layout");
+            }
+        }
+        if (queryParams.hasAlgorithm()) {
+            algorithm = queryParams.getAlgorithm();
+        }
+        BoardGenerator.checkAlgorithmVersion(queryParams, algorithm);
+        if (queryParams.hasConstraintSet()) {
+            constraintSet = queryParams.getConstraintSet();
+        }
+        BoardGenerator.checkConstraintSet(size, algorithm, constraintSet);
+        if (targetDifficulty != null) {
+            // no puzzle of this size rates any harder, so don't spend the search budget looking for one
+            difficulty = Math.min(difficulty, DifficultyRater.maxDifficulty(size, constraintSet));
+            targetDifficulty = difficulty;
+        }
+        if (queryParams.hasPriority()) {
+            priority = queryParams.getPriority();
+        }
+        task = new PuzzleTask(size, randomSeed, difficulty, targetDifficulty, sparse, symmetry, algorithm,
+                              constraintSet, priority);
         puzzleId = task.getPuzzle().getPuzzleId();
-        synchronized (puzzleGenLock) {
-            taskMap.put(puzzleId, task);
+        tasks.add(puzzleId, task);
+        PuzzleTask existing = (randomSeed != 0) ? join(task) : null;
+        if (existing != null) {
+            tasks.remove(puzzleId, task);
+            String gameBoardId = existing.gameBoardId;
+            if (gameBoardId != null) {
+                BoardGenerator.promoteBoard(gameBoardId, priority);
+            }
+            return existing.getPuzzle().getPuzzleId();
+        }
+        try {
+            if (sparse) {
+                task.reserveSparseSlot();
+            }
             task.start();
+        } catch (ServiceUnavailableException sue) {
+            task.settle();
+            removeTask(task);
+            throw sue;
+        }
+        if (task.cancelled) {
+            // cancelled before the board's ID was known to cancelPuzzle
+            BoardGenerator.cancelPuzzleBoard(task.gameBoardId);
         }
         return puzzleId;
     }
@@ -68,10 +209,7 @@ public class PuzzleGenerator {
      * @return Puzzle if it's being generated or null if it does not exist
      */
     public static Puzzle getPuzzle(String puzzleId) {
-        PuzzleTask task;
-        synchronized (puzzleGenLock) {
-            task = taskMap.get(puzzleId);
-        }
+        PuzzleTask task = tasks.get(puzzleId);
         if (task == null) {
             return null;
         }
@@ -80,35 +218,56 @@ public class PuzzleGenerator {
 
     public static List<Puzzle> query(QueryParams queryParams) {
         ArrayList<Puzzle> outList = new ArrayList<>();
-        synchronized (puzzleGenLock) {
-            taskMap.values().forEach(task -> {
-                Puzzle pz = task.getPuzzle();
-                if (pz.matchQuery(queryParams)) {
-                    if (!queryParams.checkSkip()) {
-                        outList.add(pz);
-                        // We can't break a forEach loop, without resorting to ugly hacks
-                        // this will set a kill flag when the limit is reached so we'll skip
-                        // anything past the limit
-                        queryParams.checkLimit();
-                    }
-                }
-            });
+        for (PuzzleTask task : tasks.indexed(indexKey(queryParams))) {
+            if (queryParams.isLimitReached()) {
+                break;
+            }
+            Puzzle pz = task.getPuzzle();
+            if (pz.matchQuery(queryParams) && !queryParams.checkSkip()) {
+                outList.add(pz);
+                queryParams.checkLimit();
+            }
         }
         return outList;
     }
 
     public static long count(QueryParams queryParams) {
-        // My kingdom for some real closures!!!
-        final long[] counts = new long[1];
-        synchronized (puzzleGenLock) {
-            taskMap.values().forEach(task -> {
-                Puzzle pz = task.getPuzzle();
-                if (pz != null && pz.matchQuery(queryParams)) {
-                    counts[0]++;
-                }
-            });
+        String key = indexKey(queryParams);
+        if (!queryParams.hasRandomSeed() && !queryParams.hasAlgorithm() && !queryParams.hasAlgorithmVersion()
+                && !queryParams.hasConstraintSet() && !queryParams.hasSparse() && !queryParams.hasSymmetry()) {
+            // the index covers every filter that applies to puzzles
+            return tasks.count(key);
+        }
+
+        long count = 0;
+        for (PuzzleTask task : tasks.indexed(key)) {
+            if (task.getPuzzle().matchQuery(queryParams)) {
+                count++;
+            }
         }
-        return counts[0];
+        return count;
+    }
+
+    /**
+     * @return index key narrowing a query down, or null to search every task
+     */
+    private static String indexKey(QueryParams queryParams) {
+        if (queryParams.hasSize() && queryParams.hasDifficulty()) {
+            return sizeKey(queryParams.getSize()) + "/" + difficultyKey(queryParams.getDifficulty());
+        } else if (queryParams.hasSize()) {
+            return sizeKey(queryParams.getSize());
+        } else if (queryParams.hasDifficulty()) {
+            return difficultyKey(queryParams.getDifficulty());
+        }
+        return null;
+    }
+
+    private static String sizeKey(int size) {
+        return "size=" + size;
+    }
+
+    private static String difficultyKey(int difficulty) {
+        return "difficulty=" + difficulty;
     }
     /**
      * Gets the progress of a generator.
@@ -117,105 +276,247 @@ public class PuzzleGenerator {
      * @throws IllegalArgumentException if puzzleId does not exist in task list
      */
     public static Integer getPuzzleProgress(String puzzleId) {
-        PuzzleTask task;
-        synchronized (puzzleGenLock) {
-            task = taskMap.get(puzzleId);
-        }
+        PuzzleTask task = tasks.get(puzzleId);
         if (task == null) {
             return null;
         }
         return task.getProgress();
     }
 
+    /**
+     * Stop generating a puzzle. If its board is still being generated that's cancelled too, otherwise the puzzle is
+     * dropped once carving finishes. Either way it's never registered.
+     * @param puzzleId unique Id of the puzzle to cancel
+     * @return true if the puzzle was being generated, false if it wasn't found (it may have been registered already)
+     */
+    public static boolean cancelPuzzle(String puzzleId) {
+        PuzzleTask task = tasks.get(puzzleId);
+        if (task == null || !task.settle()) {
+            // not being generated, or already in the database
+            return false;
+        }
+        removeTask(task);
+        task.cancelled = true;
+        sparsePool.remove(task.sparseSearch);
+        String gameBoardId = task.gameBoardId;
+        if (gameBoardId != null) {
+            BoardGenerator.cancelPuzzleBoard(gameBoardId);
+        }
+        return true;
+    }
+
+    /**
+     * Find an identical task for a new one to join, or make the new task the one later requests join.
+     * @return the task to join, or null if there is none
+     */
+    private static PuzzleTask join(PuzzleTask task) {
+        while (true) {
+            PuzzleTask existing = inFlight.putIfAbsent(task.key, task);
+            if (existing == null || !existing.settled.get()) {
+                return existing;
+            }
+            // finished or cancelled, but not removed yet
+            inFlight.remove(task.key, existing);
+        }
+    }
+
+    /**
+     * Remove a task from the maps requests can find it in.
+     */
+    private static void removeTask(PuzzleTask task) {
+        tasks.remove(task.getPuzzle().getPuzzleId(), task);
+        inFlight.remove(task.key, task);
+        task.releaseSparseSlot();
+    }
+
+    /**
+     * Gets the position of a puzzle's board in the generator queue.
+     * @param puzzleId unique Id of the puzzle to check
+     * @return position in the queue, 1 for the next board to start, 0 if generation has started, or null if no puzzle
+     * with that ID being generated
+     */
+    public static Integer getQueuePosition(String puzzleId) {
+        PuzzleTask task = tasks.get(puzzleId);
+        if (task == null) {
+            return null;
+        }
+        String gameBoardId = task.gameBoardId;
+        if (gameBoardId == null) {
+            return 0;
+        }
+        Integer position = BoardGenerator.getQueuePosition(gameBoardId);
+        return (position != null) ? position : 0;
+    }
+
     private static class PuzzleTask {
-        private int progress;
+        private volatile int progress;
         private Puzzle puzzle;
-        private String gameBoardId; // needed to get board gen progress
+        private volatile String gameBoardId; // needed to get board gen progress
+        private volatile boolean cancelled = false; // see cancelPuzzle
+        // set by whichever comes first, the puzzle being stored or the task being cancelled
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+        private final Algorithm algorithm;
+        private final ConstraintSet constraintSet;
+        private final Integer targetDifficulty; // null for any difficulty
+        private final Symmetry symmetry;
+        private final Priority priority;
+        private final String key; // identifies identical requests, see inFlight
+        private final Runnable sparseSearch = this::carveSparse; // the same instance to submit and remove
+        private final AtomicBoolean holdsSparseSlot = new AtomicBoolean(false);
 
-        PuzzleTask(int size, long randomSeed, int difficulty) {
+        PuzzleTask(int size, long randomSeed, int difficulty, Integer targetDifficulty, boolean sparse,
+                   Symmetry symmetry, Algorithm algorithm, ConstraintSet constraintSet, Priority priority) {
             gameBoardId = null;
+            this.algorithm = algorithm;
+            this.constraintSet = constraintSet;
+            this.priority = priority;
+            this.targetDifficulty = targetDifficulty;
+            this.symmetry = symmetry;
             // Make puzzle object to hold our generator parameters
-            this.puzzle = new Puzzle(size, randomSeed, difficulty);
+            this.puzzle = new Puzzle(size, randomSeed, difficulty, algorithm, constraintSet);
+            puzzle.setSparse(sparse);
+            puzzle.setSymmetry(symmetry.getId());
+            key = size + "/" + randomSeed + "/" + algorithm.getId() + "/" + constraintSet.getId() + "/"
+                    + targetDifficulty + "/" + sparse + "/" + symmetry.getId();
         }
 
         void gameBoardFinished(GameBoard gameBoard) {
-            progress = 50;
-            puzzle.setBoard(gameBoard.getBoard());
-
-            // Update random seed if zero (random random)
-            if (puzzle.getRandomSeed() == 0) {
-                puzzle.setRandomSeed(gameBoard.getRandomSeed());
-            }
-
-            // generate a bogus puzzle, for now
-            // TODO: Share PRNG between board gen and puzzle gen, finish puzzle gen first
-            // FIXME: add real puzzle generator
-            switch (puzzle.getSize()) {
-                case 2:
-                    puzzle.setPuzzle(new int[] {
-                            0,1, 1,1,
-                            1,1, 0,1,
-
-                            1,1, 1,0,
-                            1,0, 1,1,
-                    });
-                    break;
-                case 3:
-                    puzzle.setPuzzle(new int[] {
-                            0,1,1, 1,1,1, 1,1,1,
-                            1,1,1, 1,0,1, 1,1,1,
-                            1,1,1, 1,1,1, 1,1,0,
-
-                            1,0,1, 1,1,1, 1,1,1,
-                            1,1,1, 1,1,0, 1,1,1,
-                            1,1,1, 1,1,1, 0,1,1,
-
-                            1,1,0, 1,1,1, 1,1,1,
-                            1,1,1, 0,1,1, 1,1,1,
-                            1,1,1, 1,1,1, 1,0,1,
-                    });
-                    break;
-                case 4:
-                    puzzle.setPuzzle(new int[] {
-                            0,1,1,1, 1,1,1,1, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,0,1,1, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 1,1,0,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 1,1,1,1, 1,1,1,0,
-
-                            1,0,1,1, 1,1,1,1, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,0,1, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 1,1,1,0, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 1,1,1,1, 0,1,1,1,
-
-                            1,1,0,1, 1,1,1,1, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,0, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 0,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 1,1,1,1, 1,0,1,1,
-
-                            1,1,1,0, 1,1,1,1, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 0,1,1,1, 1,1,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 1,0,1,1, 1,1,1,1,
-                            1,1,1,1, 1,1,1,1, 1,1,1,1, 1,1,0,1,
-                    });
-                    break;
+            if (cancelled) {
+                return;
+            }
+            boolean searching = false;
+            try {
+                progress = 50;
+                puzzle.setBoard(gameBoard.getBoard());
+
+                // Update random seed if zero (random random)
+                if (puzzle.getRandomSeed() == 0) {
+                    puzzle.setRandomSeed(gameBoard.getRandomSeed());
+                }
+
+                if (puzzle.isSparse()) {
+                    try {
+                        sparsePool.execute(sparseSearch);
+                        searching = true;
+                    } catch (RejectedExecutionException ree) {
+                        // can't happen while the request holds a slot, but don't leave the puzzle hanging if it does
+                    }
+                    return;
+                }
+
+                // carve the puzzle from the board, seeded from the puzzle so it can be reproduced
+                DifficultySearch search = new DifficultySearch(puzzle.getSize(), puzzle.getBoard(),
+                                                               puzzle.getRandomSeed(), constraintSet, symmetry,
+                                                               targetDifficulty, this::setProgress, () -> cancelled);
+                search.run();
+                if (search.getMask() == null) {
+                    // deleted before any candidate was carved, it's already gone from the task registry
+                    return;
+                }
+                puzzleFinished(search.getMask(), search.getRating());
+            } finally {
+                if (!searching) {
+                    abandon();
+                }
+            }
+        }
+
+        /**
+         * Search for the sparsest puzzle the budget allows, on the sparse pool. Any requested difficulty is ignored.
+         */
+        private void carveSparse() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                int[] board = puzzle.getBoard();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SPARSE_BUDGET_MS);
+                int[] mask = new SparseCarver(puzzle.getSize(), constraintSet).carve(board, puzzle.getRandomSeed(),
+                                                                                     deadline, () -> cancelled);
+                if (mask == null) {
+                    // deleted while searching, it's already gone from the task registry
+                    return;
+                }
+                puzzleFinished(mask, new DifficultyRater(puzzle.getSize(), constraintSet).rate(board, mask));
+            } finally {
+                abandon();
             }
+        }
+
+        /**
+         * Drop the task if nothing else has settled it, so a board or carving failure doesn't leave a puzzle that
+         * never finishes and keeps collecting identical requests. Safe to call after the task has finished.
+         */
+        void abandon() {
+            if (settle()) {
+                removeTask(this);
+            }
+        }
+
+        private void puzzleFinished(int[] mask, DifficultyRating rating) {
+            if (cancelled) {
+                return;
+            }
+            puzzle.setPuzzle(mask);
+
+            // replace the requested difficulty with the actual one
+            puzzle.setDifficulty(rating.getDifficulty());
+            puzzle.setTechnique(rating.getHardestTechnique().getId());
             progress = 100;
-            // Register the puzzle with PuzzleRegistry
-            // This needs to be synchronized otherwise there's a very very slim chance
-            // we could get a puzzle requested by this ID *between* these two calls
+            // Move from the task registry to PuzzleRegistry, in that order so the puzzle is always in one of them.
             // This works because the caller knows to check the registry if it's not found in the generator
-            synchronized (puzzleGenLock) {
+            PuzzleChecker.remember(puzzle);
+            boolean stored = false;
+            try {
                 PuzzleRegistry.getRegistry().registerPuzzle(puzzle);
-                taskMap.remove(puzzle.getPuzzleId());
+                stored = true;
+            } finally {
+                // even if the database failed, so identical requests don't keep joining a dead task
+                if (settle()) {
+                    removeTask(this);
+                } else if (stored) {
+                    // deleted while it was being stored, too late for cancelPuzzle to stop it
+                    PuzzleRegistry.getRegistry().removePuzzle(puzzle.getPuzzleId());
+                } else {
+                    PuzzleChecker.forget(puzzle.getPuzzleId());
+                }
             }
         }
 
+        /**
+         * Take one of the sparse search slots for this task until it's removed.
+         * @throws ServiceUnavailableException if every slot is taken
+         */
+        void reserveSparseSlot() {
+            if (sparseSlots.incrementAndGet() > SPARSE_WORKERS + SPARSE_QUEUE_LIMIT) {
+                sparseSlots.decrementAndGet();
+                throw new ServiceUnavailableException(BoardGenerator.RETRY_AFTER_SECONDS);
+            }
+            holdsSparseSlot.set(true);
+        }
+
+        void releaseSparseSlot() {
+            if (holdsSparseSlot.compareAndSet(true, false)) {
+                sparseSlots.decrementAndGet();
+            }
+        }
+
+        /**
+         * Claim the task's outcome for the caller, either storing the puzzle or cancelling it.
+         * @return true if nothing else has claimed it yet
+         */
+        boolean settle() {
+            return settled.compareAndSet(false, true);
+        }
+
         Puzzle getPuzzle() {
             return puzzle;
         }
 
         void start() {
-            gameBoardId = BoardGenerator.generateBoard(puzzle.getSize(), puzzle.getRandomSeed(), this::gameBoardFinished);
+            gameBoardId = BoardGenerator.generateBoard(puzzle.getSize(), puzzle.getRandomSeed(), algorithm,
+                                                       constraintSet, priority, this::gameBoardFinished,
+                                                       this::abandon);
         }
 
         int getProgress() {
@@ -235,4 +536,118 @@ public class PuzzleGenerator {
             this.progress = progress;
         }
     }
+
+    /**
+     * Carves and rates puzzles from a board until one has the target difficulty.
+     *
+     * Candidate N is carved with {@link PuzzleCarver#variantSeed} of the puzzle seed and N. Workers on the target
+     * pool take candidates in order until one hits the target, then finish any lower numbered candidates still in
+     * progress, so the puzzle chosen is always the lowest numbered hit and the same seed and difficulty produce the
+     * same puzzle. If nothing hits the target before the time budget runs out, the closest candidate is used.
+     *
+     * Without a target, only candidate zero is carved. Every worker stops before its next candidate once the puzzle is
+     * cancelled.
+     */
+    private static class DifficultySearch {
+        private final int size;
+        private final int[] board;
+        private final long seed;
+        private final ConstraintSet constraintSet;
+        private final Symmetry symmetry;
+        private final Integer target;
+        private final Consumer<Integer> monitor;
+        private final BooleanSupplier cancelled;
+
+        private final AtomicInteger nextCandidate = new AtomicInteger();
+        private final AtomicInteger firstHit = new AtomicInteger(Integer.MAX_VALUE);
+        private long startTime;
+        private long deadline;
+
+        // closest candidate so far, guarded by this
+        private int bestCandidate = -1;
+        private int[] bestMask = null;
+        private DifficultyRating bestRating = null;
+
+        DifficultySearch(int size, int[] board, long seed, ConstraintSet constraintSet, Symmetry symmetry,
+                         Integer target, Consumer<Integer> monitor, BooleanSupplier cancelled) {
+            this.size = size;
+            this.board = board;
+            this.seed = seed;
+            this.constraintSet = constraintSet;
+            this.symmetry = symmetry;
+            this.target = target;
+            this.monitor = monitor;
+            this.cancelled = cancelled;
+        }
+
+        void run() {
+            if (target == null) {
+                candidates();
+                return;
+            }
+            startTime = System.nanoTime();
+            deadline = startTime + TimeUnit.MILLISECONDS.toNanos(TARGET_BUDGET_MS);
+            List<Callable<Void>> workers = new ArrayList<>(TARGET_WORKERS);
+            for (int ii = 0; ii < TARGET_WORKERS; ii++) {
+                workers.add(() -> {
+                    candidates();
+                    return null;
+                });
+            }
+            try {
+                targetPool.invokeAll(workers);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void candidates() {
+            // a target search already keeps every core busy with its own candidate
+            boolean parallel = target == null && size >= PARALLEL_CARVE_MIN_SIZE;
+            PuzzleCarver carver = new PuzzleCarver(size, constraintSet, parallel ? CARVE_WORKERS : 1);
+            DifficultyRater rater = new DifficultyRater(size, constraintSet);
+            while (true) {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                int candidate = nextCandidate.getAndIncrement();
+                if (candidate > firstHit.get() || (target == null && candidate > 0)
+                        || (candidate > 0 && System.nanoTime() > deadline)) {
+                    return;
+                }
+                int[] mask = carver.carve(board, PuzzleCarver.variantSeed(seed, candidate), symmetry);
+                DifficultyRating rating = rater.rate(board, mask);
+                if (target != null && rating.getDifficulty() == target) {
+                    firstHit.accumulateAndGet(candidate, Math::min);
+                }
+                offer(candidate, mask, rating);
+            }
+        }
+
+        private synchronized void offer(int candidate, int[] mask, DifficultyRating rating) {
+            if (bestRating == null || distance(rating) < distance(bestRating)
+                    || (distance(rating) == distance(bestRating) && candidate < bestCandidate)) {
+                bestCandidate = candidate;
+                bestMask = mask;
+                bestRating = rating;
+            }
+            if (target != null) {
+                long elapsed = System.nanoTime() - startTime;
+                long budget = TimeUnit.MILLISECONDS.toNanos(TARGET_BUDGET_MS);
+                monitor.accept(50 + (int) Math.min(49, elapsed * 50 / Math.max(1, budget)));
+            }
+        }
+
+        private int distance(DifficultyRating rating) {
+            return (target == null) ? 0 : Math.abs(rating.getDifficulty() - target);
+        }
+
+        synchronized int[] getMask() {
+            return bestMask;
+        }
+
+        synchronized DifficultyRating getRating() {
+            return bestRating;
+        }
+    }
 }
@@ -26,6 +26,9 @@ import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.ConstraintSet;
+import com.shadedreality.sudokugen.Symmetry;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 
@@ -85,6 +88,50 @@ public class PuzzleRegistry {
                 filters.add(Filters.eq("difficulty", params.getDifficulty()));
             }
 
+            if (params.hasAlgorithm()) {
+                String algorithm = params.getAlgorithm().getId();
+                Bson filter = Filters.eq("algorithm", algorithm);
+                if (Algorithm.LEGACY_ID.equals(algorithm)) {
+                    // puzzles stored before algorithms were recorded don't have the field
+                    filter = Filters.or(filter, Filters.exists("algorithm", false));
+                }
+                filters.add(filter);
+            }
+
+            if (params.hasAlgorithmVersion()) {
+                int version = params.getAlgorithmVersion();
+                Bson filter = Filters.eq("algorithmVersion", version);
+                if (version == Algorithm.LEGACY_VERSION) {
+                    filter = Filters.or(filter, Filters.exists("algorithmVersion", false));
+                }
+                filters.add(filter);
+            }
+
+            if (params.hasConstraintSet()) {
+                String constraintSet = params.getConstraintSet().getId();
+                Bson filter = Filters.eq("constraintSet", constraintSet);
+                if (ConstraintSet.CLASSIC.getId().equals(constraintSet)) {
+                    // puzzles stored before constraint sets were recorded don't have the field
+                    filter = Filters.or(filter, Filters.exists("constraintSet", false));
+                }
+                filters.add(filter);
+            }
+
+            if (params.hasSparse()) {
+                // puzzles stored before sparse mode existed don't have the field
+                filters.add(params.getSparse() ? Filters.eq("sparse", true) : Filters.ne("sparse", true));
+            }
+
+            if (params.hasSymmetry()) {
+                String symmetry = params.getSymmetry().getId();
+                Bson filter = Filters.eq("symmetry", symmetry);
+                if (Symmetry.NONE.getId().equals(symmetry)) {
+                    // puzzles stored before symmetry was recorded don't have the field
+                    filter = Filters.or(filter, Filters.exists("symmetry", false));
+                }
+                filters.add(filter);
+            }
+
             if (!filters.isEmpty()) {
                 return Filters.and(filters);
             }
@@ -153,6 +200,8 @@ public class PuzzleRegistry {
 
     public boolean removePuzzle(String puzzleId) {
         Document document = puzzleCollection.findOneAndDelete(Filters.eq("puzzleId", puzzleId));
+        // after the delete, so a check can't load it back into the cache
+        PuzzleChecker.forget(puzzleId);
         return (document != null);
     }
 
@@ -17,6 +17,11 @@
 
 package com.shadedreality.data;
 
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.ConstraintSet;
+import com.shadedreality.sudokugen.Symmetry;
+
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.core.MultivaluedMap;
 
 /**
@@ -26,6 +31,12 @@ public class QueryParams {
     private Integer size = null;
     private Long randomSeed = null;
     private Integer difficulty = null;
+    private Algorithm algorithm = null;
+    private Integer algorithmVersion = null;
+    private ConstraintSet constraintSet = null;
+    private Boolean sparse = null;
+    private Symmetry symmetry = null;
+    private Priority priority = null;
     private int skip = 0;
     private boolean limitReached = false;
     private int limit = 50;
@@ -46,6 +57,46 @@ public class QueryParams {
             difficulty = Integer.valueOf(uriParams.getFirst("difficulty"));
         }
 
+        if (uriParams.containsKey("algorithm")) {
+            try {
+                algorithm = Algorithm.fromId(uriParams.getFirst("algorithm"));
+            } catch (IllegalArgumentException iae) {
+                throw new BadRequestException(iae.getMessage());
+            }
+        }
+
+        if (uriParams.containsKey("algorithmVersion")) {
+            algorithmVersion = Integer.valueOf(uriParams.getFirst("algorithmVersion"));
+        }
+
+        if (uriParams.containsKey("constraintSet")) {
+            try {
+                constraintSet = ConstraintSet.fromId(uriParams.getFirst("constraintSet"));
+            } catch (IllegalArgumentException iae) {
+                throw new BadRequestException(iae.getMessage());
+            }
+        }
+
+        if (uriParams.containsKey("sparse")) {
+            sparse = Boolean.valueOf(uriParams.getFirst("sparse"));
+        }
+
+        if (uriParams.containsKey("symmetry")) {
+            try {
+                symmetry = Symmetry.fromId(uriParams.getFirst("symmetry"));
+            } catch (IllegalArgumentException iae) {
+                throw new BadRequestException(iae.getMessage());
+            }
+        }
+
+        if (uriParams.containsKey("priority")) {
+            try {
+                priority = Priority.fromId(uriParams.getFirst("priority"));
+            } catch (IllegalArgumentException iae) {
+                throw new BadRequestException(iae.getMessage());
+            }
+        }
+
         if (uriParams.containsKey("inProgress")) {
             queryGenerator = Boolean.valueOf(uriParams.getFirst("inProgress"));
             queryDatabase = !queryGenerator;
@@ -84,6 +135,54 @@ public class QueryParams {
         return difficulty;
     }
 
+    public boolean hasAlgorithm() {
+        return algorithm != null;
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public boolean hasAlgorithmVersion() {
+        return algorithmVersion != null;
+    }
+
+    public Integer getAlgorithmVersion() {
+        return algorithmVersion;
+    }
+
+    public boolean hasConstraintSet() {
+        return constraintSet != null;
+    }
+
+    public ConstraintSet getConstraintSet() {
+        return constraintSet;
+    }
+
+    public boolean hasSparse() {
+        return sparse != null;
+    }
+
+    public Boolean getSparse() {
+        return sparse;
+    }
+
+    public boolean hasSymmetry() {
+        return symmetry != null;
+    }
+
+    public Symmetry getSymmetry() {
+        return symmetry;
+    }
+
+    public boolean hasPriority() {
+        return priority != null;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
     public boolean isQueryDatabase() {
         return queryDatabase;
     }
@@ -157,6 +256,36 @@ public class QueryParams {
             sb.append(getDifficulty().toString());
             sb.append("\n");
         }
+        if (hasAlgorithm()) {
+            sb.append("    algorithm: ");
+            sb.append(getAlgorithm().getId());
+            sb.append("\n");
+        }
+        if (hasAlgorithmVersion()) {
+            sb.append("    algorithmVersion: ");
+            sb.append(getAlgorithmVersion().toString());
+            sb.append("\n");
+        }
+        if (hasConstraintSet()) {
+            sb.append("    constraintSet: ");
+            sb.append(getConstraintSet().getId());
+            sb.append("\n");
+        }
+        if (hasSparse()) {
+            sb.append("    sparse: ");
+            sb.append(getSparse().toString());
+            sb.append("\n");
+        }
+        if (hasSymmetry()) {
+            sb.append("    symmetry: ");
+            sb.append(getSymmetry().getId());
+            sb.append("\n");
+        }
+        if (hasPriority()) {
+            sb.append("    priority: ");
+            sb.append(getPriority().getId());
+            sb.append("\n");
+        }
         sb.append("}\n");
         return sb.toString();
     }
@@ -18,16 +18,27 @@
 package com.shadedreality.data;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Simple class to handle Random stuff. Mostly to avoid duplicate code.
+ *
+ * Seeds come from ThreadLocalRandom, so request threads creating seeds at the same time don't contend on a shared
+ * PRNG.
  */
 public class Randomeister {
+    // Discourage instantiation
+    private Randomeister() {}
+
     /**
-     * @return a random long.
+     * @return a random long, never zero since a zero seed means "pick a random seed" everywhere else.
      */
     public static long randomLong() {
-        return getMeister().getRandomLong();
+        long value;
+        do {
+            value = ThreadLocalRandom.current().nextLong();
+        } while (value == 0);
+        return value;
     }
 
     /**
@@ -36,24 +47,4 @@ public class Randomeister {
     public static Random randomRandom() {
         return new Random(randomLong());
     }
-
-    private static class MeisterFactory {
-        private static final Randomeister globalInstance = new Randomeister();
-        private static Randomeister getMeister() {
-            return globalInstance;
-        }
-    }
-
-    private static Randomeister getMeister() {
-        return MeisterFactory.getMeister();
-    }
-
-    private Random meister;
-    private Randomeister() {
-        meister = new Random(System.currentTimeMillis());
-    }
-
-    private long getRandomLong() {
-        return meister.nextLong();
-    }
 }
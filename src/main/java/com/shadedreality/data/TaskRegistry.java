@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Tasks being generated, by ID. Built on concurrent maps, so lookups, listings and counts never lock and polling for
+ * status doesn't wait on tasks starting or finishing.
+ *
+ * When a task is added it's also filed under the index keys the generator picks for it, such as its size. Counting
+ * the tasks under a key is constant time and listing them only visits those tasks. Like the maps underneath, counts
+ * and listings are a snapshot that may miss tasks added or removed while they're taken.
+ *
+ * @param <T> task type, compared by identity
+ */
+class TaskRegistry<T> {
+    private final ConcurrentMap<String, T> tasks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<String>> keysById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<T>> index = new ConcurrentHashMap<>();
+    private final Function<T, List<String>> indexKeys;
+
+    /**
+     * @param indexKeys gives the index keys for a task, called once when it's added
+     */
+    TaskRegistry(Function<T, List<String>> indexKeys) {
+        this.indexKeys = indexKeys;
+    }
+
+    void add(String id, T task) {
+        List<String> keys = indexKeys.apply(task);
+        keysById.put(id, keys);
+        for (String key : keys) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(task);
+        }
+        tasks.put(id, task);
+    }
+
+    T get(String id) {
+        return tasks.get(id);
+    }
+
+    /**
+     * Remove a task, if it's still registered under its ID.
+     * @return true if this call removed it
+     */
+    boolean remove(String id, T task) {
+        if (!tasks.remove(id, task)) {
+            return false;
+        }
+        List<String> keys = keysById.remove(id);
+        if (keys != null) {
+            for (String key : keys) {
+                index.get(key).remove(task);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return every task
+     */
+    Collection<T> all() {
+        return Collections.unmodifiableCollection(tasks.values());
+    }
+
+    /**
+     * @param key index key, or null for every task
+     * @return the tasks filed under key
+     */
+    Collection<T> indexed(String key) {
+        if (key == null) {
+            return all();
+        }
+        Set<T> found = index.get(key);
+        return (found != null) ? Collections.unmodifiableSet(found) : Collections.emptySet();
+    }
+
+    /**
+     * @param key index key, or null for every task
+     * @return number of tasks filed under key
+     */
+    int count(String key) {
+        if (key == null) {
+            return tasks.size();
+        }
+        Set<T> found = index.get(key);
+        return (found != null) ? found.size() : 0;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.shadedreality.sudokugen.Board;
+import com.shadedreality.sudokugen.BoardValidator;
+import com.shadedreality.sudokugen.ConstraintSet;
+
+import javax.ws.rs.BadRequestException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * POJO for grids submitted to be validated. Holds either a single grid in board or a batch of grids in boards, all of
+ * the same size and constraint set. Grids use the same values as GameBoard, 0 to (size*size)-1 with -1 for empty
+ * cells.
+ */
+public class ValidationRequest {
+    // Most grids accepted in one request
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private int size;
+    private String constraintSet;
+    private int[] board;
+    private int[][] boards;
+
+    public ValidationRequest() {
+        size = 3;
+        constraintSet = ConstraintSet.CLASSIC.getId();
+        board = null;
+        boards = null;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getConstraintSet() {
+        return constraintSet;
+    }
+
+    public void setConstraintSet(String constraintSet) {
+        this.constraintSet = constraintSet;
+    }
+
+    public int[] getBoard() {
+        return board;
+    }
+
+    public void setBoard(int[] board) {
+        this.board = board;
+    }
+
+    public int[][] getBoards() {
+        return boards;
+    }
+
+    public void setBoards(int[][] boards) {
+        this.boards = boards;
+    }
+
+    /**
+     * @return true if this request holds a batch of grids rather than a single grid
+     */
+    @JsonIgnore
+    public boolean isBatch() {
+        return boards != null;
+    }
+
+    /**
+     * Validate every grid in this request.
+     * @return one result per grid, in the order they were submitted
+     * @throws BadRequestException if the request is malformed or any grid has the wrong number of cells or a value
+     * out of range
+     */
+    public List<ValidationResult> validate() {
+        if (size < Board.MIN_BOARD_SIZE || size > Board.MAX_BOARD_SIZE) {
+            throw new BadRequestException("Size must be " + Board.MIN_BOARD_SIZE + "-" + Board.MAX_BOARD_SIZE);
+        }
+        if ((board == null) == (boards == null)) {
+            throw new BadRequestException("Exactly one of board or boards must be given");
+        }
+        if (boards != null && boards.length > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " boards can be validated at once");
+        }
+        BoardValidator validator;
+        try {
+            validator = new BoardValidator(size, ConstraintSet.fromId(constraintSet));
+        } catch (IllegalArgumentException iae) {
+            throw new BadRequestException(iae.getMessage());
+        }
+
+        int[][] grids = (boards != null) ? boards : new int[][] {board};
+        List<ValidationResult> results = new ArrayList<>(grids.length);
+        for (int ii = 0; ii < grids.length; ii++) {
+            int[] grid = grids[ii];
+            if (grid == null) {
+                throw new BadRequestException("Board " + ii + " is missing");
+            }
+            int[] conflicts;
+            try {
+                conflicts = validator.findConflicts(grid);
+            } catch (IllegalArgumentException iae) {
+                throw new BadRequestException("Board " + ii + ": " + iae.getMessage());
+            }
+            boolean filled = true;
+            for (int value : grid) {
+                if (value == -1) {
+                    filled = false;
+                    break;
+                }
+            }
+            results.add(new ValidationResult(conflicts, filled));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+/**
+ * POJO class used to send the result of validating one grid over the wire.
+ */
+public class ValidationResult {
+    private boolean valid;      // no two cells of any group share a value
+    private boolean complete;   // valid and every cell is filled in, so the grid is a solved board
+    private int[] conflicts;    // indices of the cells that share a value with another cell of one of their groups
+
+    ValidationResult(int[] conflicts, boolean filled) {
+        this.conflicts = conflicts;
+        valid = conflicts.length == 0;
+        complete = valid && filled;
+    }
+
+    ValidationResult() {
+        valid = false;
+        complete = false;
+        conflicts = new int[0];
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public int[] getConflicts() {
+        return conflicts.clone();
+    }
+
+    public void setConflicts(int[] conflicts) {
+        this.conflicts = conflicts.clone();
+    }
+}
@@ -32,9 +32,12 @@ import java.util.List;
  *                                    board ID, size and random seed.
  * GET    - /boards/count           - Number of boards, accepts same query params except skip and limit
  * POST   - /boards/new             - Create a new board using given parameters
+ * POST   - /boards/validate        - Check submitted grids against the rules, reporting conflicting cells. Accepts a
+ *                                    single grid or a batch, see ValidationRequest.
  * GET    - /boards/{id}            - Get a specific board (even if not fully generated yet)
- * DELETE - /boards/{id}            - Delete a board, may not take effect immediately if the board is being generated
+ * DELETE - /boards/{id}            - Delete a board, a board being generated is cancelled and never stored
  * GET    - /boards/{id}/status     - Get just the status of a board, only the progress and generated fields.
+ *                                    While waiting to be generated queuePosition gives its place in line.
  * GET    - /boards/{id}/normalized - Get a normalized board, for pattern matching. A normalized board has all cells in
  *                                    the first box arranged in sequential order, so all normalized boards of the same
  *                                    size have the same first box.
@@ -94,6 +97,21 @@ public class BoardResource {
         return Response.seeOther(boardURI).build();
     }
 
+    @POST
+    @Path("validate")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response validateBoards(ValidationRequest request) {
+        if (request == null) {
+            throw new BadRequestException("No boards to validate");
+        }
+        List<ValidationResult> results = request.validate();
+        if (request.isBatch()) {
+            return Response.ok(results).build();
+        }
+        return Response.ok(results.get(0)).build();
+    }
+
     @GET
     @Path("{id}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -111,7 +129,7 @@ public class BoardResource {
     @DELETE
     @Path("{id}")
     public Response deleteBoard(@PathParam("id") String id) {
-        if (BoardRegistry.getRegistry().removeBoard(id)) {
+        if (BoardGenerator.cancelBoard(id) || BoardRegistry.getRegistry().removeBoard(id)) {
             return Response.ok().build();
         }
         throw new NotFoundException("Game board with id " + id + " does not exist");
@@ -130,6 +148,10 @@ public class BoardResource {
                 throw new NotFoundException("Game board with id " + id + " does not exist");
             }
         }
+        Integer position = BoardGenerator.getQueuePosition(id);
+        if (position != null && position > 0) {
+            return Response.ok("{\"progress\": " + pct + ", \"queuePosition\": " + position + "}").build();
+        }
         return Response.ok("{\"progress\": " + pct + "}").build();
     }
 
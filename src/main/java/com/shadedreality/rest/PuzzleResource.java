@@ -34,9 +34,12 @@ import java.util.List;
  * POST   - /puzzles/new            - Create a new puzzle using given parameters
  * GET    - /puzzles/{id}           - Get a specific puzzle (even if not fully generated yet). Demo puzzles are
  *                                    available, set id to "demo-{size}" where size is the board size
- * DELETE - /puzzles/{id}           - Delete a puzzle, may not take effect immediately if the board or puzzle is being
- *                                    generated. Demo puzzles will not be deleted.
+ * DELETE - /puzzles/{id}           - Delete a puzzle, a puzzle being generated is cancelled and never stored. Demo
+ *                                    puzzles will not be deleted.
  * GET    - /puzzles/{id}/status    - Get just the status of a puzzle, only the progress and generated fields.
+ *                                    While waiting to be generated queuePosition gives its place in line.
+ * POST   - /puzzles/{id}/check     - Check a partial answer against the solution, returns wrong and conflicting cells
+ *                                    and whether the puzzle is complete.
  */
 
 @Path("puzzles")
@@ -125,7 +128,7 @@ public class PuzzleResource {
         if (id.startsWith("Demo-")) {
             throw new NotFoundException("Demo puzzles cannot be deleted");
         }
-        if (PuzzleRegistry.getRegistry().removePuzzle(id)) {
+        if (PuzzleGenerator.cancelPuzzle(id) || PuzzleRegistry.getRegistry().removePuzzle(id)) {
             return Response.ok().build();
         }
         throw new NotFoundException("Puzzle with id " + id + " does not exist");
@@ -144,6 +147,21 @@ public class PuzzleResource {
                 throw new NotFoundException("Puzzle with id " + id + " does not exist");
             }
         }
+        Integer position = PuzzleGenerator.getQueuePosition(id);
+        if (position != null && position > 0) {
+            return Response.ok("{\"progress\": " + pct + ", \"queuePosition\": " + position + "}").build();
+        }
         return Response.ok("{\"progress\": " + pct + "}").build();
     }
+
+    @POST
+    @Path("{id}/check")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public CheckResult checkPuzzle(@PathParam("id") String id, int[] grid) {
+        if (id.startsWith("Demo-")) {
+            throw new NotFoundException("Demo puzzles cannot be checked");
+        }
+        return PuzzleChecker.check(id, grid);
+    }
 }
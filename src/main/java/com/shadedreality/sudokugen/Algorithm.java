@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Board generation algorithms supported by the Generator. Each algorithm maps a given seed to a board on its own, so
+ * the same seed will produce different boards with different algorithms.
+ *
+ * Each algorithm also has a version, which must be bumped whenever a change to it (or the PRNG it uses) changes the
+ * board generated for any seed. Boards and puzzles record the algorithm and version they were generated with, so
+ * (algorithm, version, size, seed) always identifies exactly one board.
+ */
+public enum Algorithm {
+    /**
+     * Cell by cell chronological backtracking, the original generator. Version 1 ran to a hard loop limit, version 2
+     * restarts with derived seeds, which changes the board for the few seeds that need a restart.
+     */
+    BACKTRACK("backtrack", 2, GenRandom.LEGACY),
+
+    /**
+     * Dancing Links (Algorithm X) exact cover search.
+     */
+    DLX("dlx", 1, GenRandom.SPLITMIX),
+
+    /**
+     * Backtracking that fills the most constrained cell first, with forward checking.
+     */
+    MRV("mrv", 1, GenRandom.SPLITMIX),
+
+    /**
+     * No search at all, scrambles a canonical grid with validity preserving transforms.
+     */
+    TRANSFORM("transform", 1, GenRandom.SPLITMIX);
+
+    /**
+     * Algorithm id of boards and puzzles stored before algorithms were recorded, they were all generated by version 1
+     * of the backtracking generator.
+     */
+    public static final String LEGACY_ID = "backtrack";
+    public static final int LEGACY_VERSION = 1;
+
+    private final String id;
+    private final int version;
+    private final int randomVersion;
+
+    Algorithm(String id, int version, int randomVersion) {
+        this.id = id;
+        this.version = version;
+        this.randomVersion = randomVersion;
+    }
+
+    /**
+     * @return the identifier used for this algorithm in the REST API
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the current version of this algorithm, the only version new boards can be generated with
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return version of the PRNG this algorithm uses, see {@link GenRandom}
+     */
+    public int getRandomVersion() {
+        return randomVersion;
+    }
+
+    /**
+     * Look up an algorithm by identifier.
+     * @param id algorithm identifier, case insensitive
+     * @return the matching Algorithm
+     * @throws IllegalArgumentException if there is no algorithm with that identifier
+     */
+    public static Algorithm fromId(String id) {
+        for (Algorithm algorithm : values()) {
+            if (algorithm.id.equalsIgnoreCase(id)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown board algorithm: " + id);
+    }
+}
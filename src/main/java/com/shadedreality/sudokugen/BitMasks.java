@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Helpers for digit bitmasks. Bit N of a mask represents cell value N, so a group of up to 25 cells (size 5 boards)
+ * fits comfortably in a single int.
+ */
+final class BitMasks {
+    // Discourage instantiation
+    private BitMasks() {}
+
+    /**
+     * @param digits number of digits in a group (size * size)
+     * @return mask with the lowest {@code digits} bits set
+     */
+    static int fullMask(int digits) {
+        return (1 << digits) - 1;
+    }
+
+    /**
+     * Select the index-th set bit of a mask, counting up from the least significant bit. This matches the order values
+     * were stored in the old candidate lists, so index N here is the same value as list.get(N) was.
+     * @param mask mask to select from, must have more than index bits set
+     * @param index zero based index of the set bit to find
+     * @return the digit (bit position) of the selected bit
+     */
+    static int select(int mask, int index) {
+        for (; index > 0; index--) {
+            mask &= mask - 1; // drop lowest set bit
+        }
+        return Integer.numberOfTrailingZeros(mask);
+    }
+}
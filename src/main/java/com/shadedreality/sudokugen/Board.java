@@ -18,10 +18,15 @@
 package com.shadedreality.sudokugen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
  * A Board is a container for holding a generated Sudoku board.
+ *
+ * Cell values are stored in a single byte array in row major order, starting at the top left. Rows, columns and
+ * blocks are CellGroup views over that array, so a board is a handful of small objects no matter how large it is.
+ * Boards with a variant {@link ConstraintSet} have a CellGroup for each extra group as well.
  * @author ddehaven
  */
 public class Board {
@@ -32,11 +37,14 @@ public class Board {
     private final int groupCount;
     private final int cellCount;
     private long randomSeed;
+    private final ConstraintSet constraints;
 
-    private final ArrayList<Cell> cells;
+    // cell values, -1 if unset
+    private final byte[] values;
     private final ArrayList<CellGroup> rows;
     private final ArrayList<CellGroup> columns;
     private final ArrayList<CellGroup> blocks;
+    private final ArrayList<CellGroup> extraGroups;
     
     /**
      * Create a traditional 3x3 Sudoku board.
@@ -53,11 +61,16 @@ public class Board {
      * each Block.
      */
     Board(int dimension) {
+        this(dimension, ConstraintSet.CLASSIC);
+    }
+
+    Board(int dimension, ConstraintSet constraints) {
         // sanity check dimension, don't allow absurd numbers
         if (dimension < MIN_BOARD_SIZE || dimension > MAX_BOARD_SIZE) {
             throw new IllegalArgumentException("Invalid board dimension given ("+dimension+"), must be 2-5");
         }
         size = dimension;
+        this.constraints = constraints;
 
         // NxN groups per type (rows, columns, blocks)
         groupCount = size * size;
@@ -65,68 +78,62 @@ public class Board {
         // NxN blocks of NxN cells, so size^4 (without the call to Math)
         cellCount = groupCount * groupCount;
 
-        cells = new ArrayList<>(cellCount);
+        values = new byte[cellCount];
+        Arrays.fill(values, (byte) -1);
+
+        // groups share the cell index tables for this size
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
         rows = new ArrayList<>(groupCount);
         columns = new ArrayList<>(groupCount);
         blocks = new ArrayList<>(groupCount);
-
-        // allocate the groups
         for (int index = 0; index < groupCount; index++) {
-            rows.add(new CellGroup(groupCount));
-            columns.add(new CellGroup(groupCount));
-            blocks.add(new CellGroup(size, size));
+            rows.add(new CellGroup(this, groupCount, 1, topology.rowCells[index]));
+            columns.add(new CellGroup(this, groupCount, 1, topology.columnCells[index]));
+            blocks.add(new CellGroup(this, size, size, topology.blockCells[index]));
         }
-
-        // initialize the cells
-        for (int index = 0; index < cellCount; index++) {
-            Cell c = new Cell();
-            cells.add(c);
-
-            // calculate row, column and block, then set accordingly
-            int row = index / groupCount;
-            int col = index % groupCount;
-
-            int blockRow = (row / size);
-            int blockCol = (col / size);
-            int block = (blockRow * size) + blockCol;
-
-            // just swap col/row for indices
-            rows.get(row).set(col, c);
-            columns.get(col).set(row, c);
-            // cell coords are just col % size, row % size
-            blocks.get(block).set(col % size, row % size, c);
-
-            // be sure to tell the Cell where it is
-            c.setRow(rows.get(row));
-            c.setColumn(columns.get(col));
-            c.setBlock(blocks.get(block));
-        }
-
-        // validate all rows, cols and blocks
-        for (int ii = 0; ii < groupCount; ii++) {
-            if (!rows.get(ii).validate()) {
-                throw new InternalError("row "+ii+" is not completely initialized");
-            }
-            if (!columns.get(ii).validate()) {
-                throw new InternalError("column "+ii+" is not completely initialized");
-            }
-            if (!blocks.get(ii).validate()) {
-                throw new InternalError("block "+ii+" is not completely initialized");
-            }
+        // extra groups come after the rows, columns and blocks, and are all treated as lines
+        extraGroups = new ArrayList<>(topology.groups.length - groupCount * 3);
+        for (int index = groupCount * 3; index < topology.groups.length; index++) {
+            extraGroups.add(new CellGroup(this, groupCount, 1, topology.groups[index]));
         }
     }
 
     public Board(int dimension, long seed) {
-        this(dimension);
+        this(dimension, seed, ConstraintSet.CLASSIC);
+    }
+
+    public Board(int dimension, long seed, ConstraintSet constraints) {
+        this(dimension, constraints);
         randomSeed = seed;
     }
 
     public int getSize() {
         return size;
     }
-    
-    Cell[] getCells() {
-        return cells.toArray(new Cell[0]);
+
+    int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * @param index cell index, in row major order
+     * @return the value of the cell or -1 if it is not set
+     */
+    int getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Set the value of a cell with no checks.
+     * @param index cell index, in row major order
+     * @param value new cell value, -1 to clear the cell
+     */
+    void setValue(int index, int value) {
+        values[index] = (byte) value;
+    }
+
+    public ConstraintSet getConstraintSet() {
+        return constraints;
     }
 
     public long getRandomSeed() {
@@ -142,7 +149,7 @@ public class Board {
      * board may be reused for a generator.
      */
     void reset() {
-        blocks.forEach(CellGroup::reset);
+        Arrays.fill(values, (byte) -1);
     }
     
     /**
@@ -169,6 +176,13 @@ public class Board {
         columns.forEach(r);
     }
 
+    /**
+     * Invoke the given <code>Consumer</code> for each group the constraint set adds to the rows, columns and blocks.
+     */
+    void forEachExtraGroup(Consumer<CellGroup> r) {
+        extraGroups.forEach(r);
+    }
+
     void print() {
         StringBuilder sb = new StringBuilder("    ");
         for (int ii = 0; ii < groupCount; ii++) {
@@ -186,7 +200,7 @@ public class Board {
                 if (xx > 0 && ((xx % size) == 0)) {
                     sb.append(" | ");
                 }
-                sb.append(String.format(" %3d ", rows.get(yy).get(xx).getValue()));
+                sb.append(String.format(" %3d ", rows.get(yy).get(xx)));
             }
 
             if (yy > 0 && ((yy % size) == 0)) {
@@ -198,8 +212,8 @@ public class Board {
 
     public int[] toIntArray() {
         int[] outArray = new int[cellCount];
-        for (int ii = 0; ii < cells.size(); ii++) {
-            outArray[ii] = cells.get(ii).getValue();
+        for (int ii = 0; ii < cellCount; ii++) {
+            outArray[ii] = values[ii];
         }
         return outArray;
     }
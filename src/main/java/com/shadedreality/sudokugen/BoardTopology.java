@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Precomputed index tables for a board size and constraint set. The layout of rows, columns, blocks and any extra
+ * groups depends only on those two, so the tables are built once and shared by every Board, Generator and Solver using
+ * them.
+ *
+ * All tables are indexed by cell index, in row major order. The arrays are shared, callers must never modify them.
+ */
+final class BoardTopology {
+    static final int MIN_TOPOLOGY_SIZE = 2;
+    static final int MAX_TOPOLOGY_SIZE = 5;
+
+    // indexed by constraint set, then size
+    private static final AtomicReferenceArray<BoardTopology> topologies =
+            new AtomicReferenceArray<>(ConstraintSet.values().length * (MAX_TOPOLOGY_SIZE + 1));
+
+    final int size;
+    final ConstraintSet constraints;
+    final int groupCount;
+    final int cellCount;
+
+    // row, column and block of each cell
+    final int[] cellRow;
+    final int[] cellColumn;
+    final int[] cellBlock;
+
+    // cell indices of each group, blocks are in row major order within the block
+    final int[][] rowCells;
+    final int[][] columnCells;
+    final int[][] blockCells;
+
+    // all groups, rows first then columns then blocks then any extra groups, and the groups each cell belongs to in
+    // the same order, so every cell's first three groups are its row, column and block
+    final int[][] groups;
+    final int[][] cellGroups;
+
+    // all cells sharing a group with each cell, not including the cell itself
+    final int[][] peers;
+
+    /**
+     * Get the shared topology for a board size with the classic rules.
+     * @param size board size, 2-5
+     * @return topology tables for that size
+     */
+    static BoardTopology forSize(int size) {
+        return forSize(size, ConstraintSet.CLASSIC);
+    }
+
+    /**
+     * Get the shared topology for a board size and constraint set. Tables are built the first time they're requested.
+     * If two threads race to build the same tables, one of the results is discarded, so no locking is needed.
+     * @param size board size, 2-5
+     * @param constraints rules of the board
+     * @return topology tables for that size and constraint set
+     */
+    static BoardTopology forSize(int size, ConstraintSet constraints) {
+        if (size < MIN_TOPOLOGY_SIZE || size > MAX_TOPOLOGY_SIZE) {
+            throw new IllegalArgumentException("Invalid board dimension given ("+size+"), must be 2-5");
+        }
+        int index = constraints.ordinal() * (MAX_TOPOLOGY_SIZE + 1) + size;
+        BoardTopology topology = topologies.get(index);
+        if (topology == null) {
+            topologies.compareAndSet(index, null, new BoardTopology(size, constraints));
+            topology = topologies.get(index);
+        }
+        return topology;
+    }
+
+    private BoardTopology(int size, ConstraintSet constraints) {
+        this.size = size;
+        this.constraints = constraints;
+        groupCount = size * size;
+        cellCount = groupCount * groupCount;
+
+        cellRow = new int[cellCount];
+        cellColumn = new int[cellCount];
+        cellBlock = new int[cellCount];
+        rowCells = new int[groupCount][groupCount];
+        columnCells = new int[groupCount][groupCount];
+        blockCells = new int[groupCount][groupCount];
+
+        for (int index = 0; index < cellCount; index++) {
+            int row = index / groupCount;
+            int col = index % groupCount;
+            int block = (row / size) * size + (col / size);
+
+            cellRow[index] = row;
+            cellColumn[index] = col;
+            cellBlock[index] = block;
+
+            rowCells[row][col] = index;
+            columnCells[col][row] = index;
+            blockCells[block][(row % size) * size + (col % size)] = index;
+        }
+
+        int[][] extraGroups = constraints.extraGroups(size);
+        groups = new int[groupCount * 3 + extraGroups.length][];
+        for (int ii = 0; ii < groupCount; ii++) {
+            groups[ii] = rowCells[ii];
+            groups[groupCount + ii] = columnCells[ii];
+            groups[groupCount * 2 + ii] = blockCells[ii];
+        }
+        System.arraycopy(extraGroups, 0, groups, groupCount * 3, extraGroups.length);
+
+        int[] groupsPerCell = new int[cellCount];
+        for (int[] group : groups) {
+            if (group.length != groupCount) {
+                throw new InternalError("group has "+group.length+" cells, expected "+groupCount);
+            }
+            for (int index : group) {
+                groupsPerCell[index]++;
+            }
+        }
+        cellGroups = new int[cellCount][];
+        for (int index = 0; index < cellCount; index++) {
+            cellGroups[index] = new int[groupsPerCell[index]];
+            groupsPerCell[index] = 0;
+        }
+        for (int group = 0; group < groups.length; group++) {
+            for (int index : groups[group]) {
+                cellGroups[index][groupsPerCell[index]++] = group;
+            }
+        }
+
+        // Peers in group order, rows first, so each cell has the classic peers first whatever the constraint set
+        boolean[] seen = new boolean[cellCount];
+        int[] cellPeers = new int[cellCount];
+        peers = new int[cellCount][];
+        for (int index = 0; index < cellCount; index++) {
+            int count = 0;
+            seen[index] = true;
+            for (int group : cellGroups[index]) {
+                for (int other : groups[group]) {
+                    if (!seen[other]) {
+                        seen[other] = true;
+                        cellPeers[count++] = other;
+                    }
+                }
+            }
+            for (int ii = 0; ii < count; ii++) {
+                seen[cellPeers[ii]] = false;
+            }
+            seen[index] = false;
+            peers[index] = Arrays.copyOf(cellPeers, count);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import java.util.Arrays;
+
+/**
+ * Checks whole grids against the rules of a board. Each group is scanned once, building a "seen" and a "seen twice"
+ * bitmask of its values, and only groups where some value was seen twice are scanned again to find the cells holding
+ * it. Checking a valid grid is a single pass over every group with no allocation beyond the result.
+ *
+ * Values are the same as Board, 0 to (size*size)-1 with -1 for empty cells. Instances are not thread safe, but may be
+ * reused for any number of grids of the same size.
+ */
+public class BoardValidator {
+    private final int digits;
+    private final int cellCount;
+    private final int[][] groups;
+    private final boolean[] conflicting;
+
+    public BoardValidator(int size) {
+        this(size, ConstraintSet.CLASSIC);
+    }
+
+    public BoardValidator(int size, ConstraintSet constraints) {
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
+        digits = topology.groupCount;
+        cellCount = topology.cellCount;
+        groups = topology.groups;
+        conflicting = new boolean[cellCount];
+    }
+
+    /**
+     * Find every cell that shares a value with another cell of one of its groups. Empty cells never conflict.
+     * @param grid array of size^4 values, -1 for empty cells
+     * @return indices of the conflicting cells in ascending order, empty if the grid is valid
+     * @throws IllegalArgumentException if the grid has the wrong number of cells or a value out of range
+     */
+    public int[] findConflicts(int[] grid) {
+        if (grid.length != cellCount) {
+            throw new IllegalArgumentException("grid has " + grid.length + " cells, expected " + cellCount);
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (grid[cell] < -1 || grid[cell] >= digits) {
+                throw new IllegalArgumentException("invalid value " + grid[cell] + " in cell " + cell);
+            }
+        }
+
+        int count = 0;
+        for (int[] group : groups) {
+            int seen = 0;
+            int twice = 0;
+            for (int cell : group) {
+                int value = grid[cell];
+                if (value != -1) {
+                    int bit = 1 << value;
+                    twice |= seen & bit;
+                    seen |= bit;
+                }
+            }
+            if (twice == 0) {
+                continue;
+            }
+            for (int cell : group) {
+                int value = grid[cell];
+                if (value != -1 && (twice & (1 << value)) != 0 && !conflicting[cell]) {
+                    conflicting[cell] = true;
+                    count++;
+                }
+            }
+        }
+
+        int[] conflicts = new int[count];
+        if (count > 0) {
+            int next = 0;
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (conflicting[cell]) {
+                    conflicts[next++] = cell;
+                }
+            }
+            Arrays.fill(conflicting, false);
+        }
+        return conflicts;
+    }
+}
@@ -17,72 +17,52 @@
 
 package com.shadedreality.sudokugen;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * A group of cells. Rather than having a separate class for rows, columns and
  * blocks, which all contain the same number of cells, we have a single "group"
  * class that understands it's own dimensions.
+ *
+ * A CellGroup does not hold any values itself, it is a view over the cells of
+ * its Board, addressed by cell index.
  * @author ddehaven
  */
 public class CellGroup {
+    private final Board board;
     private final int width, height;
 
-    // Use List instead of Cell[] so we can make use of lambdas and streams
-    private final List<Cell> cells;
+    // board cell index of each cell in this group
+    private final int[] cells;
 
-    public CellGroup(int width, int height) {
+    CellGroup(Board board, int width, int height, int[] cells) {
+        if (cells.length != width * height) {
+            throw new IllegalArgumentException("cell count does not match group dimensions");
+        }
+        this.board = board;
         this.width = width;
         this.height = height;
-        this.cells = new ArrayList<>(width * height);
-        init(width * height);
-    }
-    
-    public CellGroup(int size) {
-        width = size;
-        height = 1;
-        cells = new ArrayList<>(size);
-        init(size);
+        this.cells = cells;
     }
 
-    private void init(int size) {
-        // fill cells with null values so it's not empty
-        for (int ii = 0; ii < size; ii++) {
-            cells.add(null);
+    /**
+     * Invoke the given consumer with the value of each cell in this group.
+     * @param p consumer to receive each cell value, -1 for unset cells
+     */
+    public void forEach(IntConsumer p) {
+        for (int index : cells) {
+            p.accept(board.getValue(index));
         }
     }
 
-    public void forEach(Consumer<Cell> p) {
-        cells.forEach(p);
-    }
-
-    public void set(int x, int y, Cell c) {
-        if (x < 0 || x >= width || y < 0 || y >= height) {
-            throw new IllegalArgumentException("invalid cell coordinates: "+x+","+y);
-        }
-        set((y * height) + x, c);
-    }
-    
-    public void set(int index, Cell c) {
-        if (index > cells.size()) {
-            throw new ArrayIndexOutOfBoundsException("cell index exceeds cell count");
-        }
-        if (cells.get(index) != null) {
-            throw new IllegalArgumentException("cell at index "+index+" is already set!");
-        }
-        cells.set(index, c);
-    }
-    
     /**
-     * Get a Cell at the given coordinates. For blocks.
+     * Get the value of the cell at the given coordinates. For blocks.
      * @param x the x coordinate
      * @param y the y coordinate
-     * @return 
+     * @return the cell value
      */
-    public Cell get(int x, int y) {
+    public int get(int x, int y) {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             throw new IllegalArgumentException("invalid cell coordinates: "+x+","+y);
         }
@@ -90,69 +70,60 @@ public class CellGroup {
     }
 
     /**
-     * Get a linearly indexed Cell. For rows and columns.
+     * Get the value of a linearly indexed cell. For rows and columns.
      * @param index
-     * @return 
+     * @return the cell value
      */
-    public Cell get(int index) {
-        if (index > cells.size()) {
+    public int get(int index) {
+        if (index >= cells.length) {
             throw new ArrayIndexOutOfBoundsException("cell index exceeds cell count");
         }
-        return cells.get(index);
+        return board.getValue(cells[index]);
     }
     
     public int getSize() {
-        return cells.size();
+        return cells.length;
     }
 
     /**
      * Find all cells that have no value set.
-     * @return Cell array containing all the cells that are unset. This array
+     * @return board cell indices of all the cells that are unset. This array
      * could be empty.
      */
-    public List<Cell> getUnset() {
-        return cells.stream()
-                    .filter(c -> c.getValue() == -1)
-                    .collect(Collectors.toList());
+    public int[] getUnset() {
+        return IntStream.of(cells)
+                        .filter(index -> board.getValue(index) == -1)
+                        .toArray();
     }
 
     /**
      * Validate each cell in this group.
      * Rules:
-     *  - each cell must exist (no null entries)
      *  - each cell must have a unique value
      *  - cells with no value (-1) are skipped
-     * @return true if all cells are set and unique
+     * To check a whole board at once, see {@link BoardValidator}.
+     * @return true if no two cells have the same value
      */
     public boolean validate() {
-        int size = cells.size();
-        // do null check first, so we don't have to do it twice in the next loops
-        if (cells.stream().anyMatch((c) -> (c == null))) {
-            return false;
-        }
-
-        // 0..n-1, nothing to check against the last one
-        // this could probably be optimized...
-        for (int ii = 0; ii < size-1; ii++) {
-            int value = cells.get(ii).getValue();
+        int seen = 0;
+        for (int index : cells) {
+            int value = board.getValue(index);
             if (value == -1) {
                 continue; // skip unset cells
             }
-            for (int jj = ii; jj < size; jj++) {
-                int other = cells.get(jj).getValue();
-                if (other == -1) {
-                    continue;
-                }
-                if (other == value) {
-                    return false;
-                }
+            int bit = 1 << value;
+            if ((seen & bit) != 0) {
+                return false;
             }
+            seen |= bit;
         }
         return true;
     }
     
     public void reset() {
-        cells.forEach(Cell::reset);
+        for (int index : cells) {
+            board.setValue(index, -1);
+        }
     }
     
     /**
@@ -164,7 +135,7 @@ public class CellGroup {
             StringBuilder sb = new StringBuilder();
             sb.append("    ");
             for (int xx = 0; xx < width; xx++) {
-                int value = cells.get(yy * height + xx).getValue();
+                int value = get(yy * height + xx);
                 sb.append(String.format(" %3s ", value));
             }
             System.out.println(sb.toString());
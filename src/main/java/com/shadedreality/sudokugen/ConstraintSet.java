@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Rules a board follows. Every rule set has the classic rows, columns and blocks, variants add more groups of cells
+ * that must each hold every value exactly once. The extra groups are part of the {@link BoardTopology} of the rule
+ * set, so the generators, {@link Solver}, {@link PuzzleCarver} and {@link DifficultyRater} handle them exactly like
+ * rows, columns and blocks.
+ *
+ * Every extra group has size*size cells, like the classic groups.
+ */
+public enum ConstraintSet {
+    /**
+     * Rows, columns and blocks only.
+     */
+    CLASSIC("classic"),
+
+    /**
+     * X-Sudoku, both main diagonals are groups too.
+     */
+    X("x"),
+
+    /**
+     * Hyper-Sudoku (windoku), with (size-1)*(size-1) extra blocks one cell in from the edges and one cell apart.
+     */
+    HYPER("hyper");
+
+    private final String id;
+
+    ConstraintSet(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the identifier used for this constraint set in the REST API
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Cell indices of the groups added to rows, columns and blocks.
+     * @param size board size
+     * @return one array of size*size cell indices per extra group, empty for the classic rules
+     */
+    int[][] extraGroups(int size) {
+        int groupCount = size * size;
+        switch (this) {
+            case X: {
+                int[][] diagonals = new int[2][groupCount];
+                for (int ii = 0; ii < groupCount; ii++) {
+                    diagonals[0][ii] = ii * groupCount + ii;
+                    diagonals[1][ii] = ii * groupCount + (groupCount - 1 - ii);
+                }
+                return diagonals;
+            }
+            case HYPER: {
+                int perSide = size - 1;
+                int[][] windows = new int[perSide * perSide][groupCount];
+                for (int window = 0; window < windows.length; window++) {
+                    // windows start one cell in and leave a one cell gap between them
+                    int top = 1 + (window / perSide) * (size + 1);
+                    int left = 1 + (window % perSide) * (size + 1);
+                    for (int ii = 0; ii < groupCount; ii++) {
+                        windows[window][ii] = (top + ii / size) * groupCount + left + ii % size;
+                    }
+                }
+                return windows;
+            }
+            case CLASSIC:
+            default:
+                return new int[0][];
+        }
+    }
+
+    /**
+     * Look up a constraint set by identifier.
+     * @param id constraint set identifier, case insensitive
+     * @return the matching ConstraintSet
+     * @throws IllegalArgumentException if there is no constraint set with that identifier
+     */
+    public static ConstraintSet fromId(String id) {
+        for (ConstraintSet constraints : values()) {
+            if (constraints.id.equalsIgnoreCase(id)) {
+                return constraints;
+            }
+        }
+        throw new IllegalArgumentException("Unknown constraint set: " + id);
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Exact cover engine using Knuth's Dancing Links (Algorithm X). A Sudoku board maps to an exact cover problem with
+ * one option per (cell, value) pair and a constraint for each cell having a value and for each group (row, column,
+ * block or extra group of the {@link ConstraintSet}) containing each value exactly once.
+ *
+ * The links are stored in flat int arrays rather than node objects and the search is iterative with preallocated
+ * stacks, so a search does not allocate. The column with the fewest remaining options is always chosen next.
+ *
+ * Grids passed in and out use the same values as Board, 0 to (size*size)-1 with -1 for empty cells. Instances are not
+ * thread safe, but may be reused for any number of searches.
+ */
+public class DancingLinks {
+    private static final int ROOT = 0;
+
+    private final int digits;
+    private final int cellCount;
+
+    // Node links, headers are 1..columnCount with the root at 0
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] column;
+    // option (cell * digits + value) each node belongs to
+    private final int[] option;
+    // remaining options per column
+    private final int[] columnSize;
+    // first node of each option
+    private final int[] optionNode;
+
+    // Search stacks, one entry per level. Each level fills one cell, so there are never more than cellCount levels.
+    private final int[] levelColumn;
+    private final int[][] levelNodes;
+    private final int[] levelCount;
+    private final int[] levelPosition;
+    private final int[] chosenNode;
+    // options covered for the givens of a partial grid
+    private final int[] givenNodes;
+
+    private volatile boolean cancelled = false;
+
+    public DancingLinks(int size) {
+        this(size, ConstraintSet.CLASSIC);
+    }
+
+    public DancingLinks(int size, ConstraintSet constraints) {
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
+        digits = topology.groupCount;
+        cellCount = topology.cellCount;
+
+        int columnCount = cellCount + topology.groups.length * digits;
+        int optionCount = cellCount * digits;
+        int nodeCount = columnCount + 1;
+        for (int[] groups : topology.cellGroups) {
+            nodeCount += digits * (1 + groups.length);
+        }
+
+        left = new int[nodeCount];
+        right = new int[nodeCount];
+        up = new int[nodeCount];
+        down = new int[nodeCount];
+        column = new int[nodeCount];
+        option = new int[nodeCount];
+        columnSize = new int[columnCount + 1];
+        optionNode = new int[optionCount];
+
+        // headers, in a circular list with the root
+        for (int header = 0; header <= columnCount; header++) {
+            left[header] = (header == 0) ? columnCount : header - 1;
+            right[header] = (header == columnCount) ? 0 : header + 1;
+            up[header] = header;
+            down[header] = header;
+            column[header] = header;
+            option[header] = -1;
+        }
+
+        int node = columnCount + 1;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int[] groups = topology.cellGroups[cell];
+            int[] headers = new int[1 + groups.length];
+            for (int value = 0; value < digits; value++) {
+                int first = node;
+                optionNode[cell * digits + value] = first;
+
+                // the cell, then each of its groups in topology order, rows then columns then blocks
+                headers[0] = 1 + cell;
+                for (int ii = 0; ii < groups.length; ii++) {
+                    headers[ii + 1] = 1 + cellCount + groups[ii] * digits + value;
+                }
+                for (int ii = 0; ii < headers.length; ii++) {
+                    int header = headers[ii];
+                    column[node] = header;
+                    option[node] = cell * digits + value;
+
+                    // append to the bottom of the column
+                    up[node] = up[header];
+                    down[node] = header;
+                    down[up[header]] = node;
+                    up[header] = node;
+                    columnSize[header]++;
+
+                    // and to the end of the option
+                    left[node] = (ii == 0) ? node : node - 1;
+                    right[node] = first;
+                    if (ii > 0) {
+                        right[node - 1] = node;
+                        left[first] = node;
+                    }
+                    node++;
+                }
+            }
+        }
+
+        levelColumn = new int[cellCount];
+        levelNodes = new int[cellCount][digits];
+        levelCount = new int[cellCount];
+        levelPosition = new int[cellCount];
+        chosenNode = new int[cellCount];
+        givenNodes = new int[cellCount];
+    }
+
+    /**
+     * Stop any search in progress, from any thread. The search returns as if no solution was found. Once cancelled
+     * an instance stays cancelled.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Generate a random, complete board. Options are tried in an order shuffled by the given PRNG, so the same seed
+     * always produces the same board.
+     * @param random PRNG used to order the search
+     * @param grid array of cellCount values to receive the board
+     * @return true if a board was generated
+     */
+    public boolean generate(GenRandom random, int[] grid) {
+        return search(random, grid, 1) == 1;
+    }
+
+    /**
+     * Solve a partial grid. The first solution found is written back into the grid.
+     * @param grid array of cellCount values, -1 for empty cells
+     * @return true if the grid has at least one solution
+     */
+    public boolean solve(int[] grid) {
+        return countSolutions(grid, 1, grid) == 1;
+    }
+
+    /**
+     * Count the solutions of a partial grid, stopping once the limit is reached.
+     * @param grid array of cellCount values, -1 for empty cells. Not modified.
+     * @param limit number of solutions at which to stop searching, zero for no limit
+     * @return the number of solutions found, never more than limit
+     */
+    public int countSolutions(int[] grid, int limit) {
+        return countSolutions(grid, limit, null);
+    }
+
+    private int countSolutions(int[] grid, int limit, int[] solution) {
+        if (grid.length != cellCount) {
+            throw new IllegalArgumentException("grid has " + grid.length + " cells, expected " + cellCount);
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (grid[cell] >= digits) {
+                throw new IllegalArgumentException("invalid value " + grid[cell] + " in cell " + cell);
+            }
+        }
+
+        // cover the options for the given values, a conflict means there's no solution
+        int givenCount = 0;
+        boolean conflict = false;
+        for (int cell = 0; cell < cellCount && !conflict; cell++) {
+            int value = grid[cell];
+            if (value < 0) {
+                continue;
+            }
+            int first = optionNode[cell * digits + value];
+            if (!isActive(first)) {
+                conflict = true;
+                break;
+            }
+            selectOption(first);
+            givenNodes[givenCount++] = first;
+        }
+
+        int count = 0;
+        if (!conflict) {
+            if (solution != null && solution != grid) {
+                System.arraycopy(grid, 0, solution, 0, cellCount);
+            }
+            count = search(null, solution, limit);
+        }
+
+        // restore the matrix, in reverse order
+        while (givenCount > 0) {
+            deselectOption(givenNodes[--givenCount]);
+        }
+        return count;
+    }
+
+    /**
+     * Run Algorithm X on the current matrix.
+     * @param random if not null, options are tried in shuffled order
+     * @param solution if not null, receives the values of the first solution found for the cells chosen in search
+     * @param limit stop once this many solutions are found, zero for no limit
+     * @return number of solutions found
+     */
+    private int search(GenRandom random, int[] solution, int limit) {
+        int count = 0;
+        int level = 0;
+        boolean descend = true;
+
+        while (level >= 0) {
+            if (cancelled) {
+                // when not descending, the option chosen at this level is still covered
+                unwind(descend ? level : level + 1);
+                return 0;
+            }
+            if (descend) {
+                if (right[ROOT] == ROOT) {
+                    // every constraint is satisfied
+                    if (count == 0 && solution != null) {
+                        for (int ii = 0; ii < level; ii++) {
+                            int opt = option[chosenNode[ii]];
+                            solution[opt / digits] = opt % digits;
+                        }
+                    }
+                    count++;
+                    if (limit > 0 && count >= limit) {
+                        unwind(level);
+                        return count;
+                    }
+                    descend = false;
+                    level--;
+                    continue;
+                }
+
+                int col = chooseColumn();
+                if (columnSize[col] == 0) {
+                    // dead end
+                    descend = false;
+                    level--;
+                    continue;
+                }
+
+                cover(col);
+                levelColumn[level] = col;
+                int[] nodes = levelNodes[level];
+                int nodeCount = 0;
+                for (int node = down[col]; node != col; node = down[node]) {
+                    nodes[nodeCount++] = node;
+                }
+                if (random != null) {
+                    for (int ii = nodeCount - 1; ii > 0; ii--) {
+                        int jj = random.nextInt(ii + 1);
+                        int tmp = nodes[ii];
+                        nodes[ii] = nodes[jj];
+                        nodes[jj] = tmp;
+                    }
+                }
+                levelCount[level] = nodeCount;
+                levelPosition[level] = 0;
+            } else {
+                // back at this level, undo the option tried last
+                uncoverRow(chosenNode[level]);
+            }
+
+            if (levelPosition[level] < levelCount[level]) {
+                int node = levelNodes[level][levelPosition[level]++];
+                chosenNode[level] = node;
+                coverRow(node);
+                level++;
+                descend = true;
+            } else {
+                // exhausted this level
+                uncover(levelColumn[level]);
+                descend = false;
+                level--;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Restore the matrix after stopping a search early at the given level.
+     */
+    private void unwind(int level) {
+        while (--level >= 0) {
+            uncoverRow(chosenNode[level]);
+            uncover(levelColumn[level]);
+        }
+    }
+
+    private int chooseColumn() {
+        int best = right[ROOT];
+        int bestSize = columnSize[best];
+        for (int col = right[best]; col != ROOT && bestSize > 1; col = right[col]) {
+            if (columnSize[col] < bestSize) {
+                best = col;
+                bestSize = columnSize[col];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return true if none of the columns of the option containing this node are covered
+     */
+    private boolean isActive(int first) {
+        int node = first;
+        do {
+            int col = column[node];
+            if (right[left[col]] != col) {
+                return false;
+            }
+            node = right[node];
+        } while (node != first);
+        return true;
+    }
+
+    private void selectOption(int first) {
+        int node = first;
+        do {
+            cover(column[node]);
+            node = right[node];
+        } while (node != first);
+    }
+
+    private void deselectOption(int first) {
+        int node = left[first];
+        do {
+            uncover(column[node]);
+            node = left[node];
+        } while (node != left[first]);
+    }
+
+    private void coverRow(int node) {
+        for (int jj = right[node]; jj != node; jj = right[jj]) {
+            cover(column[jj]);
+        }
+    }
+
+    private void uncoverRow(int node) {
+        for (int jj = left[node]; jj != node; jj = left[jj]) {
+            uncover(column[jj]);
+        }
+    }
+
+    private void cover(int col) {
+        right[left[col]] = right[col];
+        left[right[col]] = left[col];
+        for (int ii = down[col]; ii != col; ii = down[ii]) {
+            for (int jj = right[ii]; jj != ii; jj = right[jj]) {
+                up[down[jj]] = up[jj];
+                down[up[jj]] = down[jj];
+                columnSize[column[jj]]--;
+            }
+        }
+    }
+
+    private void uncover(int col) {
+        for (int ii = up[col]; ii != col; ii = up[ii]) {
+            for (int jj = left[ii]; jj != ii; jj = left[jj]) {
+                columnSize[column[jj]]++;
+                down[up[jj]] = jj;
+                up[down[jj]] = jj;
+            }
+        }
+        right[left[col]] = col;
+        left[right[col]] = col;
+    }
+}
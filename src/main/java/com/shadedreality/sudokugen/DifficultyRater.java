@@ -0,0 +1,471 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import java.util.Arrays;
+
+/**
+ * Rates puzzles by solving them the way a person would. Each step applies the easiest {@link Technique} that makes
+ * progress, starting over from the easiest after every step. When no technique applies, the cell with the fewest
+ * candidates is filled in from the solution, which counts as a guess.
+ *
+ * Every step scores the weight of its technique, so the score counts how often each technique was needed as well as
+ * which ones. Scores run much higher on larger boards and with variant rules, so the difficulty comes from score
+ * thresholds for each size and constraint set, set so carved puzzles spread over every difficulty the board can reach.
+ * Every size 2 puzzle can be solved with hidden singles alone, so they only reach difficulty 1, see
+ * {@link #maxDifficulty}. Techniques only remove candidates that can't be part of any solution, so rating never fails,
+ * even for puzzles with more than one solution.
+ *
+ * Instances are not thread safe, but may be reused for any number of puzzles of the same size.
+ */
+public class DifficultyRater {
+    public static final int MIN_DIFFICULTY = 1;
+    public static final int MAX_DIFFICULTY = 10;
+
+    // Lowest score of difficulties 2 and up, by size then constraint set, measured on a few hundred puzzles carved
+    // from random boards. The classic rules at size 3 leave about a quarter of puzzles needing nothing but hidden
+    // singles, all of them difficulty 1. Variants are only generated up to size 3.
+    private static final int[] NO_THRESHOLDS = {};
+    private static final int[] CLASSIC_3_THRESHOLDS = {1, 3, 15, 40, 80, 120, 170, 230, 320};
+    private static final int[] X_3_THRESHOLDS = {230, 300, 350, 390, 440, 490, 530, 570, 650};
+    private static final int[] HYPER_3_THRESHOLDS = {140, 210, 260, 300, 340, 380, 430, 490, 550};
+    private static final int[] CLASSIC_4_THRESHOLDS = {730, 810, 880, 940, 1000, 1110, 1190, 1280, 1440};
+
+    private final int[] thresholds;
+    private final int digits;
+    private final int cellCount;
+    private final int[][] groups;
+    private final int[][] cellGroups;
+    private final int[][] peers;
+    private final int[][] rowCells;
+    private final int[][] columnCells;
+
+    private final int[] values;
+    private final int[] candidates;
+    private int emptyCount;
+    private final int[] steps = new int[Technique.values().length];
+
+    // Scratch space for subsets, the cells or values of a group that may form one
+    private final int[] subset;
+    // Scratch space for subsets and X-Wings, the positions of each value within a group or line
+    private final int[] positions;
+
+    public DifficultyRater(int size) {
+        this(size, ConstraintSet.CLASSIC);
+    }
+
+    public DifficultyRater(int size, ConstraintSet constraints) {
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
+        thresholds = thresholds(size, constraints);
+        digits = topology.groupCount;
+        cellCount = topology.cellCount;
+        groups = topology.groups;
+        cellGroups = topology.cellGroups;
+        peers = topology.peers;
+        rowCells = topology.rowCells;
+        columnCells = topology.columnCells;
+
+        values = new int[cellCount];
+        candidates = new int[cellCount];
+        subset = new int[digits];
+        positions = new int[digits];
+    }
+
+    /**
+     * Highest difficulty puzzles of a size and constraint set can be rated at. Asking for anything harder can never
+     * be satisfied.
+     * @param size board size
+     * @param constraints rules of the board
+     * @return highest reachable difficulty, from MIN_DIFFICULTY to MAX_DIFFICULTY
+     */
+    public static int maxDifficulty(int size, ConstraintSet constraints) {
+        return MIN_DIFFICULTY + thresholds(size, constraints).length;
+    }
+
+    private static int[] thresholds(int size, ConstraintSet constraints) {
+        if (size == 3) {
+            switch (constraints) {
+                case X:
+                    return X_3_THRESHOLDS;
+                case HYPER:
+                    return HYPER_3_THRESHOLDS;
+                case CLASSIC:
+                default:
+                    return CLASSIC_3_THRESHOLDS;
+            }
+        }
+        // size 4 and up only have the classic rules
+        return (size >= 4) ? CLASSIC_4_THRESHOLDS : NO_THRESHOLDS;
+    }
+
+    /**
+     * Rate a puzzle.
+     * @param solution complete board the puzzle was carved from, values 0 to (size*size)-1
+     * @param mask puzzle mask, 1 for cells that are given and 0 for cells the player fills in
+     * @return the rating
+     */
+    public DifficultyRating rate(int[] solution, int[] mask) {
+        if (solution.length != cellCount || mask.length != cellCount) {
+            throw new IllegalArgumentException("puzzle has the wrong number of cells, expected " + cellCount);
+        }
+        emptyCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (mask[cell] != 0) {
+                values[cell] = solution[cell];
+            } else {
+                values[cell] = -1;
+                emptyCount++;
+            }
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] != -1) {
+                candidates[cell] = 1 << values[cell];
+            } else {
+                int used = 0;
+                for (int peer : peers[cell]) {
+                    if (values[peer] != -1) {
+                        used |= 1 << values[peer];
+                    }
+                }
+                candidates[cell] = BitMasks.fullMask(digits) & ~used;
+            }
+        }
+
+        Arrays.fill(steps, 0);
+        while (emptyCount > 0) {
+            steps[step(solution).ordinal()]++;
+        }
+
+        Technique hardest = Technique.HIDDEN_SINGLE;
+        int score = 0;
+        for (Technique technique : Technique.values()) {
+            int count = steps[technique.ordinal()];
+            if (count > 0) {
+                hardest = technique;
+                score += count * technique.getWeight();
+            }
+        }
+        int difficulty = MIN_DIFFICULTY;
+        while (difficulty - MIN_DIFFICULTY < thresholds.length && score >= thresholds[difficulty - MIN_DIFFICULTY]) {
+            difficulty++;
+        }
+        return new DifficultyRating(difficulty, score, hardest, steps);
+    }
+
+    /**
+     * Apply the easiest technique that makes progress.
+     * @return the technique applied
+     */
+    private Technique step(int[] solution) {
+        if (hiddenSingle()) {
+            return Technique.HIDDEN_SINGLE;
+        }
+        if (nakedSingle()) {
+            return Technique.NAKED_SINGLE;
+        }
+        if (lockedCandidates()) {
+            return Technique.LOCKED_CANDIDATES;
+        }
+        if (nakedSubset(2)) {
+            return Technique.NAKED_PAIR;
+        }
+        if (hiddenSubset(2)) {
+            return Technique.HIDDEN_PAIR;
+        }
+        if (nakedSubset(3)) {
+            return Technique.NAKED_TRIPLE;
+        }
+        if (hiddenSubset(3)) {
+            return Technique.HIDDEN_TRIPLE;
+        }
+        if (xWing(rowCells) || xWing(columnCells)) {
+            return Technique.X_WING;
+        }
+
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] == -1 && Integer.bitCount(candidates[cell]) < bestCount) {
+                best = cell;
+                bestCount = Integer.bitCount(candidates[cell]);
+            }
+        }
+        place(best, solution[best]);
+        return Technique.GUESS;
+    }
+
+    private boolean hiddenSingle() {
+        for (int[] group : groups) {
+            int once = 0;
+            int twice = 0;
+            for (int cell : group) {
+                if (values[cell] == -1) {
+                    twice |= once & candidates[cell];
+                    once |= candidates[cell];
+                }
+            }
+            int singles = once & ~twice;
+            if (singles != 0) {
+                int bit = singles & -singles;
+                for (int cell : group) {
+                    if (values[cell] == -1 && (candidates[cell] & bit) != 0) {
+                        place(cell, Integer.numberOfTrailingZeros(bit));
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean nakedSingle() {
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] == -1 && Integer.bitCount(candidates[cell]) == 1) {
+                place(cell, Integer.numberOfTrailingZeros(candidates[cell]));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean lockedCandidates() {
+        for (int groupIndex = 0; groupIndex < groups.length; groupIndex++) {
+            int[] group = groups[groupIndex];
+            int open = 0;
+            for (int cell : group) {
+                if (values[cell] == -1) {
+                    open |= candidates[cell];
+                }
+            }
+            while (open != 0) {
+                int bit = open & -open;
+                open ^= bit;
+
+                int first = -1;
+                for (int cell : group) {
+                    if (values[cell] == -1 && (candidates[cell] & bit) != 0) {
+                        first = cell;
+                        break;
+                    }
+                }
+                for (int other : cellGroups[first]) {
+                    if (other == groupIndex || !candidatesWithin(group, bit, other)) {
+                        continue;
+                    }
+                    boolean removed = false;
+                    for (int cell : groups[other]) {
+                        if (!inGroup(cell, groupIndex)) {
+                            removed |= eliminate(cell, bit);
+                        }
+                    }
+                    if (removed) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Naked pairs and triples, count cells of a group with only count candidates between them.
+     */
+    private boolean nakedSubset(int count) {
+        for (int[] group : groups) {
+            int found = 0;
+            for (int cell : group) {
+                int candidateCount = Integer.bitCount(candidates[cell]);
+                if (values[cell] == -1 && candidateCount >= 2 && candidateCount <= count) {
+                    subset[found++] = cell;
+                }
+            }
+            for (int ii = 0; ii < found; ii++) {
+                for (int jj = ii + 1; jj < found; jj++) {
+                    int pair = candidates[subset[ii]] | candidates[subset[jj]];
+                    if (count == 2) {
+                        if (Integer.bitCount(pair) == 2 && removeFromOthers(group, pair, subset[ii], subset[jj], -1)) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    for (int kk = jj + 1; kk < found; kk++) {
+                        int triple = pair | candidates[subset[kk]];
+                        if (Integer.bitCount(triple) == 3
+                                && removeFromOthers(group, triple, subset[ii], subset[jj], subset[kk])) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean removeFromOthers(int[] group, int mask, int cell1, int cell2, int cell3) {
+        boolean removed = false;
+        for (int cell : group) {
+            if (cell != cell1 && cell != cell2 && cell != cell3) {
+                removed |= eliminate(cell, mask);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Hidden pairs and triples, count values that fit in only count cells of a group between them.
+     */
+    private boolean hiddenSubset(int count) {
+        for (int[] group : groups) {
+            Arrays.fill(positions, 0);
+            for (int ii = 0; ii < group.length; ii++) {
+                if (values[group[ii]] == -1) {
+                    int mask = candidates[group[ii]];
+                    while (mask != 0) {
+                        int bit = mask & -mask;
+                        mask ^= bit;
+                        positions[Integer.numberOfTrailingZeros(bit)] |= 1 << ii;
+                    }
+                }
+            }
+            int found = 0;
+            for (int value = 0; value < digits; value++) {
+                int positionCount = Integer.bitCount(positions[value]);
+                if (positionCount >= 2 && positionCount <= count) {
+                    subset[found++] = value;
+                }
+            }
+            for (int ii = 0; ii < found; ii++) {
+                for (int jj = ii + 1; jj < found; jj++) {
+                    int pair = positions[subset[ii]] | positions[subset[jj]];
+                    int pairValues = (1 << subset[ii]) | (1 << subset[jj]);
+                    if (count == 2) {
+                        if (Integer.bitCount(pair) == 2 && keepOnly(group, pair, pairValues)) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    for (int kk = jj + 1; kk < found; kk++) {
+                        int triple = pair | positions[subset[kk]];
+                        if (Integer.bitCount(triple) == 3 && keepOnly(group, triple, pairValues | (1 << subset[kk]))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean keepOnly(int[] group, int cellMask, int valueMask) {
+        boolean removed = false;
+        for (int ii = 0; ii < group.length; ii++) {
+            if ((cellMask & (1 << ii)) != 0) {
+                removed |= eliminate(group[ii], ~valueMask);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * X-Wing on a set of parallel lines, rows or columns. lines[line][index] is the cell at that index of a line,
+     * cells at the same index of different lines share the crossing line.
+     */
+    private boolean xWing(int[][] lines) {
+        for (int value = 0; value < digits; value++) {
+            int bit = 1 << value;
+            for (int line = 0; line < lines.length; line++) {
+                int mask = 0;
+                for (int index = 0; index < lines[line].length; index++) {
+                    int cell = lines[line][index];
+                    if (values[cell] == -1 && (candidates[cell] & bit) != 0) {
+                        mask |= 1 << index;
+                    }
+                }
+                positions[line] = mask;
+            }
+            for (int line1 = 0; line1 < lines.length; line1++) {
+                if (Integer.bitCount(positions[line1]) != 2) {
+                    continue;
+                }
+                for (int line2 = line1 + 1; line2 < lines.length; line2++) {
+                    if (positions[line2] != positions[line1]) {
+                        continue;
+                    }
+                    boolean removed = false;
+                    for (int line = 0; line < lines.length; line++) {
+                        if (line == line1 || line == line2) {
+                            continue;
+                        }
+                        int mask = positions[line1];
+                        while (mask != 0) {
+                            int index = Integer.numberOfTrailingZeros(mask);
+                            mask &= mask - 1;
+                            removed |= eliminate(lines[line][index], bit);
+                        }
+                    }
+                    if (removed) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean candidatesWithin(int[] group, int bit, int other) {
+        for (int cell : group) {
+            if (values[cell] == -1 && (candidates[cell] & bit) != 0 && !inGroup(cell, other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean inGroup(int cell, int group) {
+        for (int g : cellGroups[cell]) {
+            if (g == group) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void place(int cell, int value) {
+        int bit = 1 << value;
+        values[cell] = value;
+        candidates[cell] = bit;
+        emptyCount--;
+        for (int peer : peers[cell]) {
+            if (values[peer] == -1) {
+                candidates[peer] &= ~bit;
+            }
+        }
+    }
+
+    /**
+     * Remove candidates from a cell, if it's empty.
+     * @return true if any candidate was removed
+     */
+    private boolean eliminate(int cell, int mask) {
+        if (values[cell] != -1 || (candidates[cell] & mask) == 0) {
+            return false;
+        }
+        candidates[cell] &= ~mask;
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Result of rating a puzzle, see {@link DifficultyRater}.
+ */
+public class DifficultyRating {
+    private final int difficulty;
+    private final int score;
+    private final Technique hardestTechnique;
+    private final int[] steps;
+
+    DifficultyRating(int difficulty, int score, Technique hardestTechnique, int[] steps) {
+        this.difficulty = difficulty;
+        this.score = score;
+        this.hardestTechnique = hardestTechnique;
+        this.steps = steps.clone();
+    }
+
+    /**
+     * @return difficulty from 1 (easiest) to 10
+     */
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return total weight of the techniques applied while solving the puzzle, see {@link Technique#getWeight}
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return the hardest technique needed to solve the puzzle
+     */
+    public Technique getHardestTechnique() {
+        return hardestTechnique;
+    }
+
+    /**
+     * @return how many times a technique was applied while solving the puzzle
+     */
+    public int getSteps(Technique technique) {
+        return steps[technique.ordinal()];
+    }
+}
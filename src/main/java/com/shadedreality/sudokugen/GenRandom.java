@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.shadedreality.sudokugen;
+
+/**
+ * PRNG used by the generators. Implementations are not synchronized, each generator owns its own instance, which
+ * avoids the atomic update java.util.Random does on every call.
+ *
+ * Each implementation has a version number. The sequence produced for a given seed must never change for a version,
+ * since boards are reproduced from their seed. New algorithms get new versions instead.
+ */
+public interface GenRandom {
+    /**
+     * Bit exact copy of java.util.Random, so boards generated before this interface existed can be reproduced.
+     */
+    int LEGACY = 1;
+
+    /**
+     * SplitMix64, fast and statistically much better than the LCG in java.util.Random.
+     */
+    int SPLITMIX = 2;
+
+    /**
+     * Create a PRNG for a version.
+     * @param version PRNG version, LEGACY or SPLITMIX
+     * @return unseeded PRNG, call setSeed before using it
+     * @throws IllegalArgumentException if the version is unknown
+     */
+    static GenRandom create(int version) {
+        switch (version) {
+            case LEGACY:
+                return new LegacyRandom();
+            case SPLITMIX:
+                return new SplitMixRandom();
+            default:
+                throw new IllegalArgumentException("Unknown PRNG version " + version);
+        }
+    }
+
+    /**
+     * @return the version of this PRNG
+     */
+    int getVersion();
+
+    void setSeed(long seed);
+
+    /**
+     * @param bound upper bound (exclusive), must be positive
+     * @return uniformly distributed value between zero (inclusive) and bound (exclusive)
+     */
+    int nextInt(int bound);
+
+    boolean nextBoolean();
+}
@@ -19,25 +19,53 @@ package com.shadedreality.sudokugen;
 
 import com.shadedreality.data.Randomeister;
 
-import java.util.Random;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
- * Simple generator that uses backtracking. May not be the best in the world, but it seems to work for all supported
- * sizes.
+ * Board generator. The default algorithm is simple backtracking. May not be the best in the world, but it seems to
+ * work for all supported sizes. Other algorithms can be selected, see {@link Algorithm}.
+ *
+ * Backtracking candidates are tracked with "used digit" bitmasks, one int per group (row, column, block and any extra
+ * group of the board's {@link ConstraintSet}), so finding the available values for a cell is a few ORs and a NOT and
+ * the generator loop does not allocate.
+ *
+ * The backtracking loops restart with a new seed derived from the board seed whenever an attempt runs past its
+ * budget, see {@link RestartSchedule}. MAX_GEN_COUNTS bounds the total over all attempts.
  */
 public class Generator {
     //                                           0  1  2  3        4          5
     private static final int[] MAX_GEN_COUNTS = {0, 0, 0, 1000000, 100000000, 1000000000};
+    // Luby restart unit, comfortably above the typical loop count for each size
+    private static final int[] RESTART_UNITS =  {0, 0, 100, 1000, 10000, 100000};
 
     // Board to generate, we'll start with the params provided in this object
     // and when finished populate the board cell array
     private final Board board;
+    private final Algorithm algorithm;
 
+    private final int groupCount;
     private final int cellCount;
-    private final Random genRandom = new Random();
+    private final int allDigits;
+
+    // Groups of each cell, shared by all generators of this size and constraint set
+    private final int[][] cellGroups;
+
+    // "Used digit" masks, one int per group. Bit N is set if value N is already placed in that group.
+    private final int[] groupMasks;
+
+    // Per cell: candidates that have not been tried yet and the value currently placed (-1 if unset)
+    private final int[] cellCandidates;
+    private final int[] cellValues;
+
+    // Peers of each cell and the order cells were filled in, for most constrained cell generation
+    private final int[][] cellPeers;
+    private final int[] fillOrder;
+
+    private final GenRandom genRandom;
     private Consumer<Integer> genMonitor = null;
-    private boolean randomizedSeed = false;
+    private volatile boolean cancelled = false;
+    private volatile DancingLinks dancingLinks = null;
 
     private int lastPct = 0; // to prevent us from "progressing" backwards
     public void setMonitor(Consumer<Integer> monitor) {
@@ -55,50 +83,211 @@ public class Generator {
     }
 
     public Generator(Board b) {
+        this(b, Algorithm.BACKTRACK);
+    }
+
+    public Generator(Board b, Algorithm algorithm) {
         board = b;
+        this.algorithm = algorithm;
+        genRandom = GenRandom.create(algorithm.getRandomVersion());
         int size = board.getSize();
-        cellCount = size * size * size * size;
+        groupCount = size * size;
+        cellCount = groupCount * groupCount;
+        allDigits = BitMasks.fullMask(groupCount);
+
+        BoardTopology topology = BoardTopology.forSize(size, board.getConstraintSet());
+        cellGroups = topology.cellGroups;
+        cellPeers = topology.peers;
+
+        groupMasks = new int[topology.groups.length];
+        cellCandidates = new int[cellCount];
+        cellValues = new int[cellCount];
+        fillOrder = new int[cellCount];
 
         long seed = board.getRandomSeed();
         if (seed == 0) {
             seed = Randomeister.randomLong();
-            randomizedSeed = true;
             board.setRandomSeed(seed); // update board with actual seed
         }
         genRandom.setSeed(seed);
     }
 
+    /**
+     * Stop generation, from any thread. A generator that is running or started after this returns false from
+     * generate() as soon as it notices.
+     */
+    public void cancel() {
+        cancelled = true;
+        DancingLinks dlx = dancingLinks;
+        if (dlx != null) {
+            dlx.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Clears all group masks and cell values so generation can start over.
+     */
+    private void clearState() {
+        Arrays.fill(groupMasks, 0);
+        Arrays.fill(cellCandidates, 0);
+        Arrays.fill(cellValues, -1);
+    }
+
+    private void placeValue(int cellIndex, int value) {
+        int bit = 1 << value;
+        cellValues[cellIndex] = value;
+        for (int group : cellGroups[cellIndex]) {
+            groupMasks[group] |= bit;
+        }
+    }
+
+    private void clearValue(int cellIndex) {
+        int bit = ~(1 << cellValues[cellIndex]);
+        cellValues[cellIndex] = -1;
+        for (int group : cellGroups[cellIndex]) {
+            groupMasks[group] &= bit;
+        }
+    }
+
+    /**
+     * @return mask of values not used by any peer of the given cell
+     */
+    private int availableValues(int cellIndex) {
+        // every cell has a row, column and block, anything after those comes from the constraint set
+        int[] groups = cellGroups[cellIndex];
+        int used = groupMasks[groups[0]] | groupMasks[groups[1]] | groupMasks[groups[2]];
+        for (int ii = 3; ii < groups.length; ii++) {
+            used |= groupMasks[groups[ii]];
+        }
+        return allDigits & ~used;
+    }
+
+    /**
+     * Choose a random value from a candidate mask. The PRNG is consumed exactly as it was when candidates were kept
+     * in a list, so a given seed still produces the same board.
+     * @param candidates candidate mask, must not be empty
+     * @return the chosen value
+     */
+    private int chooseRandomValue(int candidates) {
+        int count = Integer.bitCount(candidates);
+        if (count == 1) {
+            return Integer.numberOfTrailingZeros(candidates);
+        }
+        return BitMasks.select(candidates, genRandom.nextInt(count));
+    }
+
+    /**
+     * Start a restart schedule for one of the backtracking loops and seed the PRNG for the first attempt.
+     */
+    private RestartSchedule startSchedule() {
+        int size = board.getSize();
+        RestartSchedule schedule = new RestartSchedule(board.getRandomSeed(), RESTART_UNITS[size],
+                                                       MAX_GEN_COUNTS[size]);
+        genRandom.setSeed(schedule.getAttemptSeed());
+        return schedule;
+    }
+
+    /**
+     * Called when a generator loop uses up the budget of the current attempt. Clears the state and reseeds the PRNG
+     * for the next attempt.
+     * @param used loop count of the attempt that ran out
+     * @return true if generation should start over, false to give up
+     */
+    private boolean restart(RestartSchedule schedule, long used) {
+        clearState();
+        if (!schedule.restart(used)) {
+            // Report for posterity, and so we can check this in the future.
+            System.out.println("Loop limit reached! ("+MAX_GEN_COUNTS[board.getSize()]+"), giving up board generation.");
+            System.out.println("The seed that caused this: "+board.getRandomSeed()+" with size "+board.getSize());
+            return false;
+        }
+        genRandom.setSeed(schedule.getAttemptSeed());
+        return true;
+    }
+
+    /**
+     * Generate a full board using the algorithm this generator was created with.
+     * @return true if the board was generated
+     */
     public boolean generate() {
-        int tryCount = 5;
-        int loopCount = 0;
-        int maxCount = MAX_GEN_COUNTS[board.getSize()];
+        switch (algorithm) {
+            case DLX:
+                return generateDancingLinks();
+            case MRV:
+                return generateMostConstrained();
+            case TRANSFORM:
+                return generateTransformed();
+            case BACKTRACK:
+            default:
+                return generateBacktrack();
+        }
+    }
+
+    private boolean generateDancingLinks() {
+        int[] grid = new int[cellCount];
+        board.reset();
+        DancingLinks dlx = new DancingLinks(board.getSize(), board.getConstraintSet());
+        dancingLinks = dlx;
+        if (cancelled) {
+            return false;
+        }
+        if (!dlx.generate(genRandom, grid)) {
+            if (!cancelled) {
+                // should never happen, an empty board always has solutions
+                System.out.println("Dancing links failed to generate a board with seed "+board.getRandomSeed());
+            }
+            return false;
+        }
+        for (int ii = 0; ii < cellCount; ii++) {
+            board.setValue(ii, grid[ii]);
+        }
+        monitorUpdate(cellCount, cellCount);
+        return true;
+    }
+
+    private boolean generateTransformed() {
+        if (board.getConstraintSet() != ConstraintSet.CLASSIC) {
+            // the transforms move cells on and off the extra groups
+            throw new IllegalStateException("transform generation only supports classic boards");
+        }
+        int[] grid = new int[cellCount];
+        TransformGenerator.generate(board.getSize(), genRandom, grid);
+        for (int ii = 0; ii < cellCount; ii++) {
+            board.setValue(ii, grid[ii]);
+        }
+        monitorUpdate(cellCount, cellCount);
+        return true;
+    }
+
+    private boolean generateBacktrack() {
+        long loopCount = 0;
         int cellIndex = 0;
         boolean backtrack = false;
-        // keep a local copy of this for quick access
-        // From each cell we can access what we need
-        Cell[] cells = board.getCells();
 
         // clear any existing cells
         board.reset();
+        clearState();
+        RestartSchedule schedule = startSchedule();
+        long budget = schedule.getAttemptBudget();
 
         while (cellIndex < cellCount) {
             if (cellIndex < 0) {
                 throw new InternalError("Cell index should not fall below zero!");
             }
+            if (cancelled) {
+                clearState();
+                return false;
+            }
             monitorUpdate(cellIndex, cellCount);
 
             loopCount++;
-            if (maxCount > 0 && loopCount > maxCount) {
-                // Report for posterity, and so we can check this in the future.
-                System.out.println("Loop limit reached! ("+maxCount+"), giving up board generation.");
-                System.out.println("The seed that caused this: "+board.getRandomSeed()+" with size "+board.getSize());
-                board.reset();
-                // if we chose a randomized seed, try another
-                if (randomizedSeed && tryCount > 0) {
-                    board.setRandomSeed(Randomeister.randomLong());
-                    genRandom.setSeed(board.getRandomSeed());
-
-                    tryCount--;
+            if (loopCount > budget) {
+                if (restart(schedule, loopCount)) {
+                    budget = schedule.getAttemptBudget();
                     loopCount = 0;
                     cellIndex = 0;
                     backtrack = false;
@@ -107,17 +296,20 @@ public class Generator {
                 return false;
             }
 
-            Cell cc = cells[cellIndex];
             if (backtrack) {
+                // remove the current value from the candidates so it can't be chosen again
+                cellCandidates[cellIndex] &= ~(1 << cellValues[cellIndex]);
+                clearValue(cellIndex);
+
                 // continue to backtrack until we get to a cell that has at least one number available
-                if (cc.invalidateValue() == 0) {
-                    cc.reset();
+                if (cellCandidates[cellIndex] == 0) {
                     cellIndex--;
                     continue;
                 }
                 backtrack = false;
             } else {
-                if (cc.calculateAvailableValues() == 0) {
+                cellCandidates[cellIndex] = availableValues(cellIndex);
+                if (cellCandidates[cellIndex] == 0) {
                     // no values available
                     backtrack = true;
                     cellIndex--;
@@ -126,12 +318,124 @@ public class Generator {
             }
 
             // Randomly choose an available value
-            cc.chooseRandomValue(genRandom);
+            placeValue(cellIndex, chooseRandomValue(cellCandidates[cellIndex]));
             cellIndex++;
         }
 
+        // copy the generated values out to the board
+        for (int ii = 0; ii < cellCount; ii++) {
+            board.setValue(ii, cellValues[ii]);
+        }
+
         // If we get this far, it succeeded
-        System.out.println("Generated board after "+loopCount+" tries");
+        System.out.println("Generated board after "+loopCount+" tries, "+schedule.getAttempt()+" restarts");
+        return true;
+    }
+
+    /**
+     * Generate by always filling the unset cell with the fewest candidates next. After each value is placed its peers
+     * are checked, and if any of them is left without candidates the value is rejected right away instead of when
+     * the starved cell is reached. Cells with a single candidate (naked singles) are always filled first.
+     */
+    private boolean generateMostConstrained() {
+        long loopCount = 0;
+        int depth = 0;
+        boolean backtrack = false;
+
+        board.reset();
+        clearState();
+        RestartSchedule schedule = startSchedule();
+        long budget = schedule.getAttemptBudget();
+
+        while (depth < cellCount) {
+            if (depth < 0) {
+                throw new InternalError("Fill depth should not fall below zero!");
+            }
+            if (cancelled) {
+                clearState();
+                return false;
+            }
+            monitorUpdate(depth, cellCount);
+
+            loopCount++;
+            if (loopCount > budget) {
+                if (restart(schedule, loopCount)) {
+                    budget = schedule.getAttemptBudget();
+                    loopCount = 0;
+                    depth = 0;
+                    backtrack = false;
+                    continue;
+                }
+                return false;
+            }
+
+            int cellIndex;
+            if (backtrack) {
+                cellIndex = fillOrder[depth];
+                cellCandidates[cellIndex] &= ~(1 << cellValues[cellIndex]);
+                clearValue(cellIndex);
+
+                if (cellCandidates[cellIndex] == 0) {
+                    depth--;
+                    continue;
+                }
+                backtrack = false;
+            } else {
+                cellIndex = mostConstrainedCell();
+                fillOrder[depth] = cellIndex;
+                cellCandidates[cellIndex] = availableValues(cellIndex);
+            }
+
+            placeValue(cellIndex, chooseRandomValue(cellCandidates[cellIndex]));
+            if (!forwardCheck(cellIndex)) {
+                // a peer has no values left, try the next candidate for this cell
+                backtrack = true;
+                continue;
+            }
+            depth++;
+        }
+
+        // copy the generated values out to the board
+        for (int ii = 0; ii < cellCount; ii++) {
+            board.setValue(ii, cellValues[ii]);
+        }
+
+        // If we get this far, it succeeded
+        System.out.println("Generated board after "+loopCount+" tries, "+schedule.getAttempt()+" restarts");
+        return true;
+    }
+
+    /**
+     * @return the unset cell with the fewest available values, lowest index first on ties
+     */
+    private int mostConstrainedCell() {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int ii = 0; ii < cellCount; ii++) {
+            if (cellValues[ii] != -1) {
+                continue;
+            }
+            int count = Integer.bitCount(availableValues(ii));
+            if (count < bestCount) {
+                best = ii;
+                bestCount = count;
+                if (count <= 1) {
+                    break; // can't do better than a single
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return false if any unset peer of the given cell has no available values
+     */
+    private boolean forwardCheck(int cellIndex) {
+        for (int peer : cellPeers[cellIndex]) {
+            if (cellValues[peer] == -1 && availableValues(peer) == 0) {
+                return false;
+            }
+        }
         return true;
     }
 }
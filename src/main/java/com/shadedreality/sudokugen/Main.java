@@ -32,10 +32,10 @@ public class Main {
         
         // fill with test data
         if (DEBUG) {
-            Cell[] cells = b.getCells();
-            int index = 0;
-            for (Cell c : cells) {
-                c.forceValue(index++);
+            // cells hold a byte, so keep the test values in range for the board
+            int valueCount = b.getSize() * b.getSize();
+            for (int index = 0; index < b.getCellCount(); index++) {
+                b.setValue(index, index % valueCount);
             }
         }
         
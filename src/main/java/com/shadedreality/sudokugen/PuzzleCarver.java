@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Carves a puzzle out of a complete board. Clues are removed one at a time in a seeded random order, and a clue is
+ * put back whenever removing it would allow a second solution. The result is a minimal puzzle, no remaining clue can
+ * be removed without losing uniqueness.
+ *
+ * Since the puzzle stays unique after every step, removing one more clue only breaks uniqueness if some solution has
+ * a different value in that cell, so each step is a single {@link Solver#hasSolutionWithout} check against the
+ * solver's current givens rather than a full solution count. The solver's givens are updated in place as clues are
+ * removed.
+ *
+ * With a parallelism above one, batches of the next few clues in the order are checked at once on the fork join pool,
+ * each against its own Solver holding the current givens. A clue that has to be kept also has to be kept once more
+ * clues are gone, so every keep in a batch stands, but only the first removal does, the checks after it assumed it was
+ * still there and go back in the queue. The puzzle is exactly the one a single thread would carve. Batches grow while
+ * every result stands and shrink when results are thrown away, which keeps the early part of carving, where nearly
+ * every clue can be removed, close to single threaded.
+ *
+ * Instances are not thread safe, but may be reused for any number of puzzles of the same size.
+ */
+public class PuzzleCarver {
+    private final int size;
+    private final int cellCount;
+    private final int parallelism;
+    private final Solver[] solvers;
+    // another solution found by each solver, when checking orbits of more than one cell
+    private final int[][] others;
+    private final GenRandom random = GenRandom.create(GenRandom.SPLITMIX);
+    private final int[] order;
+    private final boolean[] keep;
+
+    public PuzzleCarver(int size) {
+        this(size, ConstraintSet.CLASSIC, 1);
+    }
+
+    public PuzzleCarver(int size, ConstraintSet constraints) {
+        this(size, constraints, 1);
+    }
+
+    /**
+     * @param size board size
+     * @param constraints rules the puzzle's solution must be unique under
+     * @param parallelism most clues to check at once, 1 to carve on the calling thread only
+     */
+    public PuzzleCarver(int size, ConstraintSet constraints, int parallelism) {
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
+        this.size = size;
+        cellCount = topology.cellCount;
+        this.parallelism = Math.max(1, parallelism);
+        solvers = new Solver[this.parallelism];
+        others = new int[this.parallelism][cellCount];
+        for (int ii = 0; ii < solvers.length; ii++) {
+            solvers[ii] = new Solver(size, constraints);
+        }
+        order = new int[cellCount];
+        keep = new boolean[this.parallelism];
+    }
+
+    /**
+     * Seed for one of several different puzzles carved from the same board. Variant zero is the puzzle seed itself.
+     * @param seed puzzle seed
+     * @param variant variant number, zero or more
+     * @return seed to pass to {@link #carve}
+     */
+    public static long variantSeed(long seed, int variant) {
+        return RestartSchedule.subSeed(seed, variant);
+    }
+
+    /**
+     * Carve a puzzle from a complete board. The same board and seed always produce the same puzzle.
+     * @param solution complete, valid board with values 0 to (size*size)-1
+     * @param seed seed for the removal order
+     * @return puzzle mask, 1 for cells that are given and 0 for cells the player has to fill in
+     */
+    public int[] carve(int[] solution, long seed) {
+        return carve(solution, seed, Symmetry.NONE);
+    }
+
+    /**
+     * Carve a puzzle with a symmetric clue layout. Clues are removed an orbit at a time, see
+     * {@link Symmetry#orbits}, and the puzzle is minimal in that no orbit can be removed. Checking an orbit of more
+     * than one cell needs a search for any other solution rather than one that differs in a single cell, but there
+     * are only half or a quarter as many orbits as cells to check.
+     * @param solution complete, valid board with values 0 to (size*size)-1
+     * @param seed seed for the removal order
+     * @param symmetry clue layout
+     * @return puzzle mask, 1 for cells that are given and 0 for cells the player has to fill in
+     */
+    public int[] carve(int[] solution, long seed, Symmetry symmetry) {
+        return carve(solution, seed, symmetry, null);
+    }
+
+    /**
+     * Carve a puzzle, giving up part way if a stop condition is met.
+     * @param stop checked during every uniqueness check, or null to always finish
+     * @return puzzle mask, or null if carving was stopped
+     */
+    int[] carve(int[] solution, long seed, Symmetry symmetry, BooleanSupplier stop) {
+        for (Solver solver : solvers) {
+            solver.setStop(stop);
+        }
+        try {
+            return carveStoppable(solution, seed, symmetry);
+        } finally {
+            for (Solver solver : solvers) {
+                solver.setStop(null);
+            }
+        }
+    }
+
+    private int[] carveStoppable(int[] solution, long seed, Symmetry symmetry) {
+        for (Solver solver : solvers) {
+            if (!solver.load(solution)) {
+                throw new IllegalArgumentException("solution is not a valid board");
+            }
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (solution[cell] < 0) {
+                throw new IllegalArgumentException("solution is not complete, cell " + cell + " is empty");
+            }
+        }
+
+        // with no symmetry every cell is its own orbit, so this is a shuffle of the cells
+        int[][] orbits = symmetry.orbits(size);
+        int orbitCount = orbits.length;
+        random.setSeed(seed);
+        for (int ii = 0; ii < orbitCount; ii++) {
+            order[ii] = ii;
+        }
+        for (int ii = orbitCount - 1; ii > 0; ii--) {
+            int jj = random.nextInt(ii + 1);
+            int tmp = order[ii];
+            order[ii] = order[jj];
+            order[jj] = tmp;
+        }
+
+        int[] mask = new int[cellCount];
+        Arrays.fill(mask, 1);
+        int next = 0;
+        int batch = 1;
+        while (next < orbitCount) {
+            int count = Math.min(batch, orbitCount - next);
+            check(solution, orbits, next, count);
+            for (int ii = 0; ii < count; ii++) {
+                if (solvers[ii].isStopped()) {
+                    return null;
+                }
+            }
+
+            // every keep stands, removals after the first were checked against stale givens
+            boolean removed = false;
+            int stale = 0;
+            for (int ii = 0; ii < count; ii++) {
+                int orbit = order[next + ii];
+                if (keep[ii]) {
+                    continue;
+                }
+                if (!removed) {
+                    removed = true;
+                    for (int cell : orbits[orbit]) {
+                        mask[cell] = 0;
+                        for (Solver solver : solvers) {
+                            solver.clearGiven(cell);
+                        }
+                    }
+                } else {
+                    // the slots before the end of the batch are free again, check these first next time
+                    order[next + stale++] = orbit;
+                }
+            }
+            if (stale > 0) {
+                System.arraycopy(order, next, order, next + count - stale, stale);
+                next += count - stale;
+                batch = Math.max(1, batch / 2);
+            } else {
+                next += count;
+                batch = Math.min(parallelism, batch * 2);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Check whether each orbit of a batch has to be kept, with all other clues as they are.
+     */
+    private void check(int[] solution, int[][] orbits, int first, int count) {
+        if (count == 1) {
+            keep[0] = mustKeep(0, solution, orbits[order[first]]);
+            return;
+        }
+        List<Callable<Void>> checks = new ArrayList<>(count);
+        for (int ii = 0; ii < count; ii++) {
+            final int index = ii;
+            final int[] orbit = orbits[order[first + ii]];
+            checks.add(() -> {
+                keep[index] = mustKeep(index, solution, orbit);
+                return null;
+            });
+        }
+        // invokeAll waits for every check, which also publishes the results to this thread
+        ForkJoinPool.commonPool().invokeAll(checks);
+    }
+
+    private boolean mustKeep(int worker, int[] solution, int[] orbit) {
+        Solver solver = solvers[worker];
+        for (int cell : orbit) {
+            solver.clearGiven(cell);
+        }
+        boolean needed;
+        if (orbit.length == 1) {
+            needed = solver.hasSolutionWithout(orbit[0], solution[orbit[0]]);
+        } else {
+            needed = solver.findOtherSolution(solution, others[worker]);
+        }
+        for (int cell : orbit) {
+            solver.setGiven(cell, solution[cell]);
+        }
+        return needed;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Restart budgets for randomized backtracking searches. Search run times have a heavy tail, a few unlucky seeds take
+ * orders of magnitude longer than the rest, so rather than running one attempt to a hard cap we restart with a fresh
+ * seed whenever an attempt uses up its budget. Budgets follow the Luby sequence (1, 1, 2, 1, 1, 2, 4, 1, ...) times a
+ * unit, which is within a log factor of the best fixed restart strategy without knowing the run time distribution.
+ *
+ * Restart seeds are derived from the original seed, so a given seed still always produces the same board.
+ */
+final class RestartSchedule {
+    private final long seed;
+    private final long unit;
+    private final long maxTotal;
+
+    private int attempt;
+    private long spent;
+
+    /**
+     * @param seed seed of the first attempt
+     * @param unit budget multiplier, in loop iterations
+     * @param maxTotal total iterations over all attempts before giving up, zero for no limit
+     */
+    RestartSchedule(long seed, long unit, long maxTotal) {
+        this.seed = seed;
+        this.unit = unit;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * @return zero based index of the current attempt
+     */
+    int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * @return seed for the current attempt, the original seed for the first attempt
+     */
+    long getAttemptSeed() {
+        return subSeed(seed, attempt);
+    }
+
+    /**
+     * @return iteration budget of the current attempt, capped by whatever is left of the total
+     */
+    long getAttemptBudget() {
+        long budget = unit * luby(attempt + 1);
+        if (maxTotal > 0) {
+            budget = Math.min(budget, maxTotal - spent);
+        }
+        return budget;
+    }
+
+    /**
+     * Move on to the next attempt.
+     * @param used iterations used by the attempt that just failed
+     * @return false if the total budget is used up and the search should give up
+     */
+    boolean restart(long used) {
+        spent += used;
+        attempt++;
+        return maxTotal <= 0 || spent < maxTotal;
+    }
+
+    /**
+     * Element i of the Luby sequence, 1 based.
+     */
+    static long luby(int i) {
+        while (true) {
+            // find k such that 2^(k-1) <= i < 2^k
+            int k = 32 - Integer.numberOfLeadingZeros(i);
+            if (i == (1 << k) - 1) {
+                return 1L << (k - 1);
+            }
+            i = i - (1 << (k - 1)) + 1;
+        }
+    }
+
+    /**
+     * Derive the seed for an attempt. Attempt zero uses the seed as is, later attempts are scrambled with the
+     * SplitMix64 finalizer so neighboring attempts get unrelated seeds.
+     */
+    static long subSeed(long seed, int attempt) {
+        if (attempt == 0) {
+            return seed;
+        }
+        long z = seed + attempt * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,590 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Logical Sudoku solver working on candidate bitmasks. Each solve first applies naked singles, hidden singles and
+ * locked candidates until nothing changes, then falls back to a depth first search on the cell with the fewest
+ * candidates, applying singles again after every guess.
+ *
+ * The solver keeps two layers of state. The givens (clues) are set with {@link #load(int[])}, {@link #setGiven} and
+ * {@link #clearGiven}, which update the group masks incrementally. Every solve starts from the givens and undoes its
+ * own changes through a preallocated trail, so the same instance can be reused for thousands of checks while clues
+ * are added and removed, and the solve loop never allocates.
+ *
+ * A stop condition can be set to bound how long any one solve takes, see {@link #setStop}.
+ *
+ * Values are the same as Board, 0 to (size*size)-1 with -1 for empty cells. Instances are not thread safe.
+ */
+public class Solver {
+    // Guesses between checks of the stop condition
+    private static final int STOP_CHECK_GUESSES = 256;
+
+    private final int digits;
+    private final int cellCount;
+    private final int allDigits;
+    private final int[][] groups;
+    private final int[][] cellGroups;
+    private final int[][] peers;
+
+    // Givens, and the digits given in each group
+    private final int[] givens;
+    private final int[] givenMasks;
+    private boolean givenConflict = false;
+
+    // Working state for a solve
+    private final int[] values;
+    private final int[] candidates;
+    private int emptyCount;
+
+    // Cells left with a single candidate, and groups that lost candidates, waiting to be propagated
+    private final int[] singleQueue;
+    private int singleCount;
+    private final boolean[] groupDirty;
+    private final int[] dirtyGroups;
+    private int dirtyCount;
+
+    // Undo trail, the previous candidates and value of each changed cell
+    private final int[] trailCell;
+    private final int[] trailCandidates;
+    private final int[] trailValue;
+    private int trailSize;
+
+    // Search stack, the cell guessed at each depth, candidates still to try and trail position before the guess
+    private final int[] stackCell;
+    private final int[] stackRemaining;
+    private final int[] stackMark;
+
+    // Checked while searching, and whether the last solve was cut short by it
+    private BooleanSupplier stop = null;
+    private boolean stopped = false;
+
+    public Solver(int size) {
+        this(size, ConstraintSet.CLASSIC);
+    }
+
+    /**
+     * @param size board size
+     * @param constraints rules of the board, every group is propagated the same way
+     */
+    public Solver(int size, ConstraintSet constraints) {
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
+        digits = topology.groupCount;
+        cellCount = topology.cellCount;
+        allDigits = BitMasks.fullMask(digits);
+        groups = topology.groups;
+        cellGroups = topology.cellGroups;
+        peers = topology.peers;
+
+        givens = new int[cellCount];
+        Arrays.fill(givens, -1);
+        givenMasks = new int[groups.length];
+
+        values = new int[cellCount];
+        candidates = new int[cellCount];
+        singleQueue = new int[cellCount];
+        groupDirty = new boolean[groups.length];
+        dirtyGroups = new int[groups.length];
+
+        // Along any search path a cell's candidates only shrink, so each cell is saved at most once per candidate
+        // plus once when it's assigned
+        int trailCapacity = cellCount * (digits + 1);
+        trailCell = new int[trailCapacity];
+        trailCandidates = new int[trailCapacity];
+        trailValue = new int[trailCapacity];
+
+        stackCell = new int[cellCount];
+        stackRemaining = new int[cellCount];
+        stackMark = new int[cellCount];
+    }
+
+    /**
+     * Replace all givens.
+     * @param grid array of size^4 values, -1 for empty cells
+     * @return false if two givens conflict, in which case every solve finds no solutions
+     */
+    public boolean load(int[] grid) {
+        if (grid.length != cellCount) {
+            throw new IllegalArgumentException("grid has " + grid.length + " cells, expected " + cellCount);
+        }
+        Arrays.fill(givens, -1);
+        Arrays.fill(givenMasks, 0);
+        givenConflict = false;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int value = grid[cell];
+            if (value < 0) {
+                continue;
+            }
+            if (value >= digits) {
+                throw new IllegalArgumentException("invalid value " + value + " in cell " + cell);
+            }
+            if ((givenMask(cell) & (1 << value)) != 0) {
+                givenConflict = true;
+            }
+            addGiven(cell, value);
+        }
+        return !givenConflict;
+    }
+
+    /**
+     * Add a given. The value must not already be given in any group of the cell.
+     */
+    public void setGiven(int cell, int value) {
+        if (givens[cell] != -1) {
+            throw new IllegalStateException("cell " + cell + " already has a given value");
+        }
+        if ((givenMask(cell) & (1 << value)) != 0) {
+            throw new IllegalStateException("value " + value + " conflicts with a given peer of cell " + cell);
+        }
+        addGiven(cell, value);
+    }
+
+    /**
+     * Remove a given, the cell becomes empty.
+     */
+    public void clearGiven(int cell) {
+        int value = givens[cell];
+        if (value == -1) {
+            return;
+        }
+        if (givenConflict) {
+            throw new IllegalStateException("givens conflict, reload the grid instead");
+        }
+        int bit = ~(1 << value);
+        for (int group : cellGroups[cell]) {
+            givenMasks[group] &= bit;
+        }
+        givens[cell] = -1;
+    }
+
+    public int getGiven(int cell) {
+        return givens[cell];
+    }
+
+    /**
+     * Set a condition to give up on, checked when a solve starts and every few hundred guesses. A solve that gives up
+     * returns as if it found nothing more than it had so far, so check {@link #isStopped} before trusting a result.
+     * @param stop stop condition, or null to always run to the end
+     */
+    public void setStop(BooleanSupplier stop) {
+        this.stop = stop;
+    }
+
+    /**
+     * @return true if the last solve gave up because of the stop condition, its result is then meaningless
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Count solutions of the current givens.
+     * @param limit stop once this many solutions are found, zero for no limit. Use 2 to check for uniqueness.
+     * @return number of solutions found, never more than limit
+     */
+    public int countSolutions(int limit) {
+        return run(limit, null, null, -1, -1);
+    }
+
+    /**
+     * Solve the current givens.
+     * @param solution array of size^4 values to receive the first solution found
+     * @return true if there is a solution
+     */
+    public boolean solve(int[] solution) {
+        return run(1, solution, null, -1, -1) == 1;
+    }
+
+    /**
+     * Check whether the givens allow a solution where a cell has a different value than expected. If a puzzle has a
+     * unique solution, removing a single clue keeps it unique exactly when there is no solution with a different
+     * value in that cell, which is much cheaper to search for than counting solutions.
+     * @param cell cell to check, normally empty in the givens
+     * @param value value the cell must not have
+     * @return true if some solution has another value in that cell
+     */
+    public boolean hasSolutionWithout(int cell, int value) {
+        return run(1, null, null, cell, value) == 1;
+    }
+
+    /**
+     * Find a solution other than a known one, to see where the givens fall short of a unique solution.
+     * @param known a solution of the givens
+     * @param other array of size^4 values to receive the other solution
+     * @return true if there is another solution
+     */
+    public boolean findOtherSolution(int[] known, int[] other) {
+        return run(1, other, known, -1, -1) == 1;
+    }
+
+    private int run(int limit, int[] solution, int[] known, int excludeCell, int excludeValue) {
+        stopped = stop != null && stop.getAsBoolean();
+        if (stopped) {
+            return 0;
+        }
+        if (givenConflict) {
+            return 0;
+        }
+        if (!begin()) {
+            return 0;
+        }
+        if (excludeCell >= 0) {
+            int bit = 1 << excludeValue;
+            if (values[excludeCell] == excludeValue) {
+                return 0;
+            }
+            if ((candidates[excludeCell] & bit) != 0 && !eliminate(excludeCell, bit)) {
+                return 0;
+            }
+        }
+        if (!propagate(true)) {
+            return 0;
+        }
+        return search(limit, solution, known);
+    }
+
+    /**
+     * Reset the working state to the givens, with every group queued up for hidden singles.
+     * @return false if an empty cell has no candidates
+     */
+    private boolean begin() {
+        trailSize = 0;
+        emptyCount = 0;
+        singleCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int value = givens[cell];
+            values[cell] = value;
+            if (value != -1) {
+                candidates[cell] = 1 << value;
+                continue;
+            }
+            int mask = allDigits & ~givenMask(cell);
+            if (mask == 0) {
+                return false;
+            }
+            candidates[cell] = mask;
+            emptyCount++;
+            if ((mask & (mask - 1)) == 0) {
+                singleQueue[singleCount++] = cell;
+            }
+        }
+        for (int group = 0; group < groups.length; group++) {
+            groupDirty[group] = true;
+            dirtyGroups[group] = group;
+        }
+        dirtyCount = groups.length;
+        return true;
+    }
+
+    /**
+     * @param known if not null, this solution isn't counted
+     */
+    private int search(int limit, int[] solution, int[] known) {
+        int count = 0;
+        int depth = 0;
+        int guesses = 0;
+        boolean descend = true;
+
+        while (true) {
+            if (descend) {
+                if (emptyCount == 0) {
+                    if (known == null || !Arrays.equals(values, known)) {
+                        if (count == 0 && solution != null) {
+                            System.arraycopy(values, 0, solution, 0, cellCount);
+                        }
+                        count++;
+                        if (limit > 0 && count >= limit) {
+                            return count;
+                        }
+                    }
+                } else {
+                    int cell = mostConstrainedCell();
+                    stackCell[depth] = cell;
+                    stackRemaining[depth] = candidates[cell];
+                    stackMark[depth] = trailSize;
+                    depth++;
+                }
+            }
+
+            // try the next candidate of the deepest guess
+            descend = false;
+            while (depth > 0 && !descend) {
+                int top = depth - 1;
+                rewind(stackMark[top]);
+                int remaining = stackRemaining[top];
+                if (remaining == 0) {
+                    depth--;
+                    continue;
+                }
+                if (stop != null && ++guesses % STOP_CHECK_GUESSES == 0 && stop.getAsBoolean()) {
+                    stopped = true;
+                    return count;
+                }
+                int bit = remaining & -remaining;
+                stackRemaining[top] = remaining ^ bit;
+                descend = assign(stackCell[top], Integer.numberOfTrailingZeros(bit)) && propagate(false);
+            }
+            if (!descend) {
+                return count;
+            }
+        }
+    }
+
+    private int mostConstrainedCell() {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] == -1) {
+                int count = Integer.bitCount(candidates[cell]);
+                if (count < bestCount) {
+                    best = cell;
+                    bestCount = count;
+                    if (count <= 2) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Apply naked singles and hidden singles until nothing changes. Only cells that were reduced to a single
+     * candidate and groups that lost a candidate since the last call are looked at.
+     * @param locked also look for locked candidates. They're worth it before the search starts, but inside the search
+     *               they cost more than the guesses they save.
+     * @return false if a contradiction was found
+     */
+    private boolean propagate(boolean locked) {
+        boolean ok = true;
+        while (ok) {
+            if (singleCount > 0) {
+                int cell = singleQueue[--singleCount];
+                if (values[cell] == -1) {
+                    ok = assign(cell, Integer.numberOfTrailingZeros(candidates[cell]));
+                }
+            } else if (dirtyCount > 0) {
+                int group = dirtyGroups[--dirtyCount];
+                groupDirty[group] = false;
+                ok = hiddenSingles(groups[group]);
+            } else if (locked && emptyCount > 0) {
+                // only look for locked candidates once the singles have dried up
+                int removed = lockedCandidates();
+                ok = removed >= 0;
+                if (removed == 0) {
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+        if (!ok) {
+            singleCount = 0;
+            while (dirtyCount > 0) {
+                groupDirty[dirtyGroups[--dirtyCount]] = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Place every value that fits in only one cell of a group.
+     * @return false if a value has nowhere to go or can't be placed
+     */
+    private boolean hiddenSingles(int[] group) {
+        int once = 0;
+        int twice = 0;
+        int placed = 0;
+        for (int cell : group) {
+            if (values[cell] != -1) {
+                placed |= 1 << values[cell];
+            } else {
+                twice |= once & candidates[cell];
+                once |= candidates[cell];
+            }
+        }
+        if ((once | placed) != allDigits) {
+            return false;
+        }
+        int singles = once & ~twice & ~placed;
+        while (singles != 0) {
+            int bit = singles & -singles;
+            singles ^= bit;
+            for (int cell : group) {
+                if (values[cell] == -1 && (candidates[cell] & bit) != 0) {
+                    if (!assign(cell, Integer.numberOfTrailingZeros(bit))) {
+                        return false;
+                    }
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Locked candidates (pointing and claiming). If every candidate for a value in one group lies inside a second
+     * group, the value can be removed from the rest of the second group.
+     * @return -1 on contradiction, 1 if any candidate was removed, 0 otherwise
+     */
+    private int lockedCandidates() {
+        int result = 0;
+        for (int groupIndex = 0; groupIndex < groups.length; groupIndex++) {
+            int[] group = groups[groupIndex];
+            int once = 0;
+            int twice = 0;
+            for (int cell : group) {
+                if (values[cell] == -1) {
+                    twice |= once & candidates[cell];
+                    once |= candidates[cell];
+                }
+            }
+
+            while (twice != 0) {
+                int bit = twice & -twice;
+                twice ^= bit;
+
+                int first = -1;
+                for (int cell : group) {
+                    if (values[cell] == -1 && (candidates[cell] & bit) != 0) {
+                        first = cell;
+                        break;
+                    }
+                }
+                for (int other : cellGroups[first]) {
+                    if (other == groupIndex || !allCandidatesIn(group, bit, other)) {
+                        continue;
+                    }
+                    for (int cell : groups[other]) {
+                        if (values[cell] == -1 && (candidates[cell] & bit) != 0 && !inGroup(cell, groupIndex)) {
+                            if (!eliminate(cell, bit)) {
+                                return -1;
+                            }
+                            result = 1;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean allCandidatesIn(int[] group, int bit, int other) {
+        for (int cell : group) {
+            if (values[cell] == -1 && (candidates[cell] & bit) != 0 && !inGroup(cell, other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean inGroup(int cell, int group) {
+        for (int g : cellGroups[cell]) {
+            if (g == group) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Place a value and remove it from the candidates of every peer.
+     * @return false if the value isn't a candidate or a peer is left without candidates
+     */
+    private boolean assign(int cell, int value) {
+        int bit = 1 << value;
+        if ((candidates[cell] & bit) == 0) {
+            return false;
+        }
+        save(cell);
+        values[cell] = value;
+        candidates[cell] = bit;
+        emptyCount--;
+
+        for (int peer : peers[cell]) {
+            if ((candidates[peer] & bit) != 0) {
+                if (values[peer] != -1 || !eliminate(peer, bit)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a candidate from an empty cell, queueing up the cell if only one candidate is left and its groups to be
+     * checked for hidden singles.
+     * @return false if the cell has no candidates left
+     */
+    private boolean eliminate(int cell, int bit) {
+        save(cell);
+        int mask = candidates[cell] & ~bit;
+        candidates[cell] = mask;
+        if (mask == 0) {
+            return false;
+        }
+        if ((mask & (mask - 1)) == 0) {
+            singleQueue[singleCount++] = cell;
+        }
+        for (int group : cellGroups[cell]) {
+            if (!groupDirty[group]) {
+                groupDirty[group] = true;
+                dirtyGroups[dirtyCount++] = group;
+            }
+        }
+        return true;
+    }
+
+    private int givenMask(int cell) {
+        int mask = 0;
+        for (int group : cellGroups[cell]) {
+            mask |= givenMasks[group];
+        }
+        return mask;
+    }
+
+    private void addGiven(int cell, int value) {
+        int bit = 1 << value;
+        for (int group : cellGroups[cell]) {
+            givenMasks[group] |= bit;
+        }
+        givens[cell] = value;
+    }
+
+    private void save(int cell) {
+        trailCell[trailSize] = cell;
+        trailCandidates[trailSize] = candidates[cell];
+        trailValue[trailSize] = values[cell];
+        trailSize++;
+    }
+
+    private void rewind(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            int cell = trailCell[trailSize];
+            if (values[cell] != -1 && trailValue[trailSize] == -1) {
+                emptyCount++;
+            }
+            candidates[cell] = trailCandidates[trailSize];
+            values[cell] = trailValue[trailSize];
+        }
+    }
+}
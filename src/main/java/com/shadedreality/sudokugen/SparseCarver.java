@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Searches for puzzles with as few clues as possible. A single pass of {@link PuzzleCarver} gives a minimal puzzle,
+ * no clue can be removed, but usually not the smallest one for its board. This keeps carving with different removal
+ * orders, and improves each puzzle by removing two clues and adding back one where the other solutions differ, until
+ * no such swap works or time runs out.
+ *
+ * The deadline is checked inside every uniqueness check, so the search stops on time apart from carving the first
+ * puzzle, which always finishes. The result depends on how much time the search gets, so unlike carving, the same
+ * seed may give a different puzzle on a different run. Instances are not thread safe, but may be reused for any number
+ * of puzzles of the same size.
+ */
+public class SparseCarver {
+    private final int cellCount;
+    private final PuzzleCarver carver;
+    private final Solver solver;
+    private final GenRandom random = GenRandom.create(GenRandom.SPLITMIX);
+    private final int[] grid;
+    private final int[] other;
+    private final int[] clues;
+
+    public SparseCarver(int size) {
+        this(size, ConstraintSet.CLASSIC);
+    }
+
+    public SparseCarver(int size, ConstraintSet constraints) {
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
+        cellCount = topology.cellCount;
+        carver = new PuzzleCarver(size, constraints);
+        solver = new Solver(size, constraints);
+        grid = new int[cellCount];
+        other = new int[cellCount];
+        clues = new int[cellCount];
+    }
+
+    /**
+     * Search for the puzzle with the fewest clues. At least one puzzle is always carved, even if the deadline has
+     * already passed.
+     * @param solution complete, valid board with values 0 to (size*size)-1
+     * @param seed seed for the removal orders
+     * @param deadline {@link System#nanoTime()} at which to stop searching
+     * @return puzzle mask, 1 for cells that are given and 0 for cells the player has to fill in
+     */
+    public int[] carve(int[] solution, long seed, long deadline) {
+        return carve(solution, seed, deadline, () -> false);
+    }
+
+    /**
+     * Search for the puzzle with the fewest clues, unless the search is cancelled.
+     * @param solution complete, valid board with values 0 to (size*size)-1
+     * @param seed seed for the removal orders
+     * @param deadline {@link System#nanoTime()} at which to stop searching
+     * @param cancelled checked as often as the deadline, the search is abandoned as soon as it returns true
+     * @return puzzle mask, 1 for cells that are given and 0 for cells the player has to fill in, or null if cancelled
+     */
+    public int[] carve(int[] solution, long seed, long deadline, BooleanSupplier cancelled) {
+        BooleanSupplier stop = () -> cancelled.getAsBoolean() || System.nanoTime() - deadline >= 0;
+        int[] best = carver.carve(solution, seed, Symmetry.NONE, cancelled);
+        if (best == null) {
+            return null;
+        }
+        solver.setStop(stop);
+        try {
+            random.setSeed(seed);
+            int bestClues = reduce(solution, best, stop);
+            for (int variant = 1; !stop.getAsBoolean(); variant++) {
+                long variantSeed = PuzzleCarver.variantSeed(seed, variant);
+                int[] mask = carver.carve(solution, variantSeed, Symmetry.NONE, stop);
+                if (mask == null) {
+                    break;
+                }
+                random.setSeed(variantSeed);
+                int clueCount = reduce(solution, mask, stop);
+                if (clueCount < bestClues) {
+                    best = mask;
+                    bestClues = clueCount;
+                }
+            }
+        } finally {
+            solver.setStop(null);
+        }
+        return cancelled.getAsBoolean() ? null : best;
+    }
+
+    /**
+     * Swap two clues for one for as long as possible. Stopping part way leaves a puzzle that's still unique, but
+     * might not be minimal.
+     * @param mask minimal puzzle, updated in place
+     * @return number of clues left
+     */
+    private int reduce(int[] solution, int[] mask, BooleanSupplier stop) {
+        for (int cell = 0; cell < cellCount; cell++) {
+            grid[cell] = (mask[cell] != 0) ? solution[cell] : -1;
+        }
+        solver.load(grid);
+
+        boolean improved = true;
+        while (improved && !stop.getAsBoolean()) {
+            improved = false;
+            int count = shuffledClues(mask);
+            for (int ii = 0; ii < count && !improved; ii++) {
+                for (int jj = ii + 1; jj < count && !improved; jj++) {
+                    improved = swap(solution, mask, clues[ii], clues[jj]);
+                    if (!improved && solver.isStopped()) {
+                        return count;
+                    }
+                }
+            }
+        }
+        int count = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            count += mask[cell];
+        }
+        return count;
+    }
+
+    /**
+     * Try to replace two clues with one. Without both clues there are other solutions, so the new clue has to be in
+     * a cell where one of them differs.
+     * @return true if the clues were replaced, the mask is then minimal again unless the search was stopped
+     */
+    private boolean swap(int[] solution, int[] mask, int first, int second) {
+        solver.clearGiven(first);
+        solver.clearGiven(second);
+        boolean foundOther = solver.findOtherSolution(solution, other);
+        if (!foundOther && !solver.isStopped()) {
+            // can't happen for a minimal puzzle, but fewer clues is fewer clues
+            mask[first] = 0;
+            mask[second] = 0;
+            return true;
+        }
+        for (int cell = 0; cell < cellCount && foundOther; cell++) {
+            if (other[cell] == solution[cell] || cell == first || cell == second) {
+                continue;
+            }
+            solver.setGiven(cell, solution[cell]);
+            int count = solver.countSolutions(2);
+            if (solver.isStopped()) {
+                solver.clearGiven(cell);
+                break;
+            }
+            if (count == 1) {
+                mask[first] = 0;
+                mask[second] = 0;
+                mask[cell] = 1;
+                minimize(solution, mask);
+                return true;
+            }
+            solver.clearGiven(cell);
+        }
+        solver.setGiven(first, solution[first]);
+        solver.setGiven(second, solution[second]);
+        return false;
+    }
+
+    /**
+     * Remove any clue that is no longer needed.
+     */
+    private void minimize(int[] solution, int[] mask) {
+        int count = shuffledClues(mask);
+        for (int ii = 0; ii < count; ii++) {
+            int cell = clues[ii];
+            solver.clearGiven(cell);
+            // a stopped check proves nothing, keep the clue
+            if (solver.hasSolutionWithout(cell, solution[cell]) || solver.isStopped()) {
+                solver.setGiven(cell, solution[cell]);
+            } else {
+                mask[cell] = 0;
+            }
+        }
+    }
+
+    /**
+     * Collect the clues of a puzzle in random order.
+     * @return number of clues
+     */
+    private int shuffledClues(int[] mask) {
+        int count = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (mask[cell] != 0) {
+                clues[count++] = cell;
+            }
+        }
+        for (int ii = count - 1; ii > 0; ii--) {
+            int jj = random.nextInt(ii + 1);
+            int tmp = clues[ii];
+            clues[ii] = clues[jj];
+            clues[jj] = tmp;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import java.util.Arrays;
+
+/**
+ * Clue layouts for puzzles. With a symmetry other than NONE, clues are removed together with their images, so the
+ * cells that are given form a symmetric pattern.
+ */
+public enum Symmetry {
+    /**
+     * Any layout.
+     */
+    NONE("none"),
+
+    /**
+     * Unchanged by a half turn.
+     */
+    ROT180("rot180"),
+
+    /**
+     * Unchanged by a quarter turn.
+     */
+    ROT90("rot90"),
+
+    /**
+     * Mirrored left to right.
+     */
+    MIRROR("mirror"),
+
+    /**
+     * Mirrored across the diagonal from the top left to the bottom right.
+     */
+    DIAGONAL("diagonal");
+
+    private final String id;
+
+    Symmetry(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the identifier used for this symmetry in the REST API
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Split the cells of a board into orbits, sets of cells that map onto each other and have to be given or hidden
+     * together. Orbits are in order of their lowest cell, and cells within an orbit are in the order the symmetry
+     * visits them.
+     * @param size board size
+     * @return cell indices of each orbit
+     */
+    int[][] orbits(int size) {
+        BoardTopology topology = BoardTopology.forSize(size);
+        int cellCount = topology.cellCount;
+        boolean[] seen = new boolean[cellCount];
+        int[][] orbits = new int[cellCount][];
+        int count = 0;
+        int[] orbit = new int[4];
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (seen[cell]) {
+                continue;
+            }
+            int length = 0;
+            for (int image = cell; !seen[image]; image = map(topology, image)) {
+                seen[image] = true;
+                orbit[length++] = image;
+            }
+            orbits[count++] = Arrays.copyOf(orbit, length);
+        }
+        return Arrays.copyOf(orbits, count);
+    }
+
+    /**
+     * @return the cell a cell maps to
+     */
+    private int map(BoardTopology topology, int cell) {
+        int last = topology.groupCount - 1;
+        int row = topology.cellRow[cell];
+        int col = topology.cellColumn[cell];
+        switch (this) {
+            case ROT180:
+                return topology.rowCells[last - row][last - col];
+            case ROT90:
+                return topology.rowCells[col][last - row];
+            case MIRROR:
+                return topology.rowCells[row][last - col];
+            case DIAGONAL:
+                return topology.rowCells[col][row];
+            default:
+                return cell;
+        }
+    }
+
+    /**
+     * Look up a symmetry by identifier.
+     * @param id symmetry identifier, case insensitive
+     * @return the matching Symmetry
+     * @throws IllegalArgumentException if there is no symmetry with that identifier
+     */
+    public static Symmetry fromId(String id) {
+        for (Symmetry symmetry : values()) {
+            if (symmetry.id.equalsIgnoreCase(id)) {
+                return symmetry;
+            }
+        }
+        throw new IllegalArgumentException("Unknown puzzle symmetry: " + id);
+    }
+}
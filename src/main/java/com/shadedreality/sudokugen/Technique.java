@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Solving techniques used to rate puzzles, from easiest to hardest. Each step of solving a puzzle scores the weight of
+ * the technique it used, and the rating of a puzzle is based on the total, see {@link DifficultyRater}.
+ */
+public enum Technique {
+    /**
+     * A value fits in only one cell of a row, column or block.
+     */
+    HIDDEN_SINGLE("hiddenSingle", 0),
+
+    /**
+     * A cell has only one candidate left.
+     */
+    NAKED_SINGLE("nakedSingle", 1),
+
+    /**
+     * All candidates for a value in one group lie in a second group, so the value can be removed from the rest of the
+     * second group (pointing and claiming).
+     */
+    LOCKED_CANDIDATES("lockedCandidates", 9),
+
+    /**
+     * Two cells of a group have the same two candidates, which can be removed from the rest of the group.
+     */
+    NAKED_PAIR("nakedPair", 16),
+
+    /**
+     * Two values fit in only the same two cells of a group, so those cells can't hold anything else.
+     */
+    HIDDEN_PAIR("hiddenPair", 25),
+
+    /**
+     * Three cells of a group have only three candidates between them.
+     */
+    NAKED_TRIPLE("nakedTriple", 25),
+
+    /**
+     * Three values fit in only the same three cells of a group.
+     */
+    HIDDEN_TRIPLE("hiddenTriple", 36),
+
+    /**
+     * A value fits in the same two columns of two rows (or the same two rows of two columns), so it can be removed
+     * from the rest of those columns (or rows).
+     */
+    X_WING("xWing", 36),
+
+    /**
+     * None of the above make progress, a value has to be guessed.
+     */
+    GUESS("guess", 64);
+
+    private final String id;
+    private final int weight;
+
+    Technique(String id, int weight) {
+        this.id = id;
+        this.weight = weight;
+    }
+
+    /**
+     * @return the identifier used for this technique in the REST API
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return score of each step that uses this technique. Hidden singles are free, so a puzzle that only needs them
+     * scores zero.
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.Board;
+import com.shadedreality.sudokugen.ConstraintSet;
+import com.shadedreality.sudokugen.Generator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.HttpHeaders;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Scheduling tests. Generators for held seeds wait until the seed is released or the generator is cancelled, so tests
+ * decide which boards occupy the pool, and finished boards are recorded instead of going to the database. The tests
+ * work for any GEN_POOL_THREADS and GEN_QUEUE_LIMIT.
+ */
+public class BoardGeneratorTest {
+    private static final long TIMEOUT_MS = 10000;
+    // seeds are never reused, so a test can't join a board left over from another
+    private static final AtomicLong nextSeed = new AtomicLong(1000);
+
+    private final Set<Long> held = ConcurrentHashMap.newKeySet();
+    // seeds in the order their generators started, and their boards were stored
+    private final BlockingQueue<Long> started = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Long> stored = new LinkedBlockingQueue<>();
+    private final List<String> boardIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        BoardGenerator.setTestHooks(HeldGenerator::new, new BoardGenerator.BoardStore() {
+            @Override
+            public void registerBoard(GameBoard gameBoard) {
+                stored.add(gameBoard.getRandomSeed());
+            }
+
+            @Override
+            public void removeBoard(String boardId) {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        held.clear();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        for (String boardId : boardIds) {
+            while (BoardGenerator.getBoard(boardId) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        BoardGenerator.setTestHooks(null, null);
+    }
+
+    @Test
+    public void fullQueueIsTurnedAway() {
+        fillPool(Priority.INTERACTIVE);
+        for (int ii = 0; ii < BoardGenerator.QUEUE_LIMIT; ii++) {
+            generate(seed(), Priority.INTERACTIVE);
+        }
+        try {
+            generate(seed(), Priority.INTERACTIVE);
+            fail("queue limit ignored");
+        } catch (ServiceUnavailableException sue) {
+            assertEquals(503, sue.getResponse().getStatus());
+            assertEquals(String.valueOf(BoardGenerator.RETRY_AFTER_SECONDS),
+                         sue.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+    }
+
+    @Test
+    public void backgroundWorkOnlyFillsHalfTheQueue() {
+        fillPool(Priority.INTERACTIVE);
+        int room = Math.max(1, BoardGenerator.QUEUE_LIMIT / 2);
+        for (int ii = 0; ii < room; ii++) {
+            generate(seed(), (ii % 2 == 0) ? Priority.BACKGROUND : Priority.BULK);
+        }
+        for (Priority priority : new Priority[] {Priority.BACKGROUND, Priority.BULK}) {
+            try {
+                generate(seed(), priority);
+                fail(priority.getId() + " work filled the queue");
+            } catch (ServiceUnavailableException sue) {
+                assertEquals(503, sue.getResponse().getStatus());
+            }
+        }
+        if (room < BoardGenerator.QUEUE_LIMIT) {
+            // the rest is kept for interactive work
+            generate(seed(), Priority.INTERACTIVE);
+        }
+    }
+
+    @Test
+    public void interactiveWorkStartsFirst() throws InterruptedException {
+        // room for the background and bulk boards to queue together
+        assumeTrue(BoardGenerator.QUEUE_LIMIT >= 4);
+        List<Long> running = fillPool(Priority.INTERACTIVE);
+        long bulk = hold();
+        long background = hold();
+        long interactive = hold();
+        String bulkId = generate(bulk, Priority.BULK);
+        String backgroundId = generate(background, Priority.BACKGROUND);
+        String interactiveId = generate(interactive, Priority.INTERACTIVE);
+        assertEquals(Integer.valueOf(1), BoardGenerator.getQueuePosition(interactiveId));
+        assertEquals(Integer.valueOf(2), BoardGenerator.getQueuePosition(backgroundId));
+        assertEquals(Integer.valueOf(3), BoardGenerator.getQueuePosition(bulkId));
+
+        // free one thread at a time, so the order boards start in is the order they left the queue
+        for (long expected : new long[] {interactive, background, bulk}) {
+            release(running.remove(0));
+            assertEquals(Long.valueOf(expected), nextStarted());
+            running.add(expected);
+        }
+        assertEquals(Integer.valueOf(0), BoardGenerator.getQueuePosition(bulkId));
+    }
+
+    @Test
+    public void preemptedTaskStillCompletes() throws InterruptedException {
+        assumeTrue(BoardGenerator.MAX_PREEMPTIONS > 0);
+        long victim = startBehindInteractiveWork(Priority.BULK);
+        long interactive = seed();
+        generate(interactive, Priority.INTERACTIVE);
+        // the bulk board gives up its thread, then gets it back once the interactive board is done
+        assertEquals(Long.valueOf(interactive), nextStarted());
+        assertEquals(Long.valueOf(interactive), nextStored());
+        assertEquals(Long.valueOf(victim), nextStarted());
+        release(victim);
+        assertEquals(Long.valueOf(victim), nextStored());
+    }
+
+    @Test
+    public void taskIsOnlyPreemptedSoOften() throws InterruptedException {
+        long victim = startBehindInteractiveWork(Priority.BACKGROUND);
+        for (int ii = 0; ii < BoardGenerator.MAX_PREEMPTIONS; ii++) {
+            long interactive = seed();
+            generate(interactive, Priority.INTERACTIVE);
+            assertEquals(Long.valueOf(interactive), nextStarted());
+            assertEquals(Long.valueOf(interactive), nextStored());
+            assertEquals(Long.valueOf(victim), nextStarted());
+        }
+
+        // now it keeps its thread and the interactive board waits
+        long waiting = seed();
+        String waitingId = generate(waiting, Priority.INTERACTIVE);
+        assertNull(started.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(Integer.valueOf(1), BoardGenerator.getQueuePosition(waitingId));
+        release(victim);
+        assertEquals(Long.valueOf(victim), nextStored());
+        assertEquals(Long.valueOf(waiting), nextStarted());
+        assertEquals(Long.valueOf(waiting), nextStored());
+    }
+
+    @Test
+    public void cancelledQueuedBoardNeverRuns() throws InterruptedException {
+        List<Long> running = fillPool(Priority.INTERACTIVE);
+        long queued = seed();
+        String queuedId = generate(queued, Priority.INTERACTIVE);
+        assertTrue(BoardGenerator.cancelBoard(queuedId));
+        assertNull(BoardGenerator.getBoard(queuedId));
+        assertNull(BoardGenerator.getQueuePosition(queuedId));
+        assertFalse(BoardGenerator.cancelBoard(queuedId));
+
+        // the next board runs in its place
+        long next = seed();
+        generate(next, Priority.INTERACTIVE);
+        release(running.get(0));
+        assertEquals(running.get(0), nextStored());
+        assertEquals(Long.valueOf(next), nextStarted());
+        assertEquals(Long.valueOf(next), nextStored());
+    }
+
+    @Test
+    public void cancelledRunningBoardIsNeverStored() throws InterruptedException {
+        List<Long> running = fillPool(Priority.INTERACTIVE);
+        String cancelledId = boardIds.get(0);
+        assertTrue(BoardGenerator.cancelBoard(cancelledId));
+        assertNull(BoardGenerator.getBoard(cancelledId));
+
+        // its generator stops and frees the thread for the next board
+        long next = seed();
+        generate(next, Priority.INTERACTIVE);
+        assertEquals(Long.valueOf(next), nextStarted());
+        assertEquals(Long.valueOf(next), nextStored());
+        release(running.get(0));
+        assertNull(stored.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void puzzleBoardCanOnlyBeCancelledWithItsPuzzle() throws InterruptedException {
+        fillPool(Priority.INTERACTIVE);
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        String boardId = BoardGenerator.generateBoard(2, seed(), Algorithm.BACKTRACK, ConstraintSet.CLASSIC,
+                                                      Priority.INTERACTIVE, board -> finished.incrementAndGet(),
+                                                      failed::incrementAndGet);
+        boardIds.add(boardId);
+        try {
+            BoardGenerator.cancelBoard(boardId);
+            fail("puzzle board cancelled on its own");
+        } catch (ClientErrorException cee) {
+            assertEquals(409, cee.getResponse().getStatus());
+        }
+        assertNotNull(BoardGenerator.getBoard(boardId));
+
+        // cancelling the puzzle cancels the queued board and tells the puzzle it won't finish
+        assertTrue(BoardGenerator.cancelPuzzleBoard(boardId));
+        assertNull(BoardGenerator.getBoard(boardId));
+        assertEquals(1, failed.get());
+        assertEquals(0, finished.get());
+    }
+
+    @Test
+    public void identicalRequestsShareABoard() throws InterruptedException {
+        List<Long> running = fillPool(Priority.INTERACTIVE);
+        long seed = seed();
+        String boardId = generate(seed, Priority.INTERACTIVE);
+        assertEquals(boardId, generate(seed, Priority.INTERACTIVE));
+
+        running.forEach(this::release);
+        List<Long> seeds = new ArrayList<>();
+        for (int ii = 0; ii <= running.size(); ii++) {
+            seeds.add(nextStored());
+        }
+        assertTrue(seeds.contains(seed));
+        assertNull("board generated twice", stored.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void joiningRaisesThePriority() {
+        assumeTrue(BoardGenerator.QUEUE_LIMIT >= 4);
+        fillPool(Priority.INTERACTIVE);
+        long seed = seed();
+        String bulkId = generate(seed, Priority.BULK);
+        String backgroundId = generate(seed(), Priority.BACKGROUND);
+        assertEquals(Integer.valueOf(2), BoardGenerator.getQueuePosition(bulkId));
+
+        assertEquals(bulkId, generate(seed, Priority.INTERACTIVE));
+        assertEquals(Integer.valueOf(1), BoardGenerator.getQueuePosition(bulkId));
+        assertEquals(Integer.valueOf(2), BoardGenerator.getQueuePosition(backgroundId));
+    }
+
+    @Test
+    public void onlySeededBoardRequestsJoin() {
+        assumeTrue(BoardGenerator.QUEUE_LIMIT >= 3);
+        fillPool(Priority.INTERACTIVE);
+        // any seed will do, so there's nothing to share
+        assertFalse(generate(0, Priority.INTERACTIVE).equals(generate(0, Priority.INTERACTIVE)));
+
+        // a puzzle's board belongs to the puzzle
+        long seed = seed();
+        String boardId = generate(seed, Priority.INTERACTIVE);
+        String puzzleBoardId = BoardGenerator.generateBoard(2, seed, Algorithm.BACKTRACK, ConstraintSet.CLASSIC,
+                                                            Priority.INTERACTIVE, board -> { }, null);
+        boardIds.add(puzzleBoardId);
+        assertFalse(boardId.equals(puzzleBoardId));
+    }
+
+    @Test
+    public void everySeedIsGenerated() throws InterruptedException {
+        // once a debugging seed that was registered but never generated
+        generate(8675309L, Priority.INTERACTIVE);
+        assertEquals(Long.valueOf(8675309L), nextStored());
+    }
+
+    /**
+     * Occupy every generator thread with a held board, all but the last one interactive so only the last one can be
+     * preempted.
+     * @return the seed of the last board
+     */
+    private long startBehindInteractiveWork(Priority priority) {
+        for (int ii = 1; ii < BoardGenerator.POOL_THREADS; ii++) {
+            start(Priority.INTERACTIVE);
+        }
+        return start(priority);
+    }
+
+    /**
+     * Occupy every generator thread with a held board.
+     * @return the seeds of the boards, in the order they started
+     */
+    private List<Long> fillPool(Priority priority) {
+        List<Long> seeds = new ArrayList<>();
+        for (int ii = 0; ii < BoardGenerator.POOL_THREADS; ii++) {
+            seeds.add(start(priority));
+        }
+        return seeds;
+    }
+
+    /**
+     * Generate a held board on a free thread.
+     * @return its seed
+     */
+    private long start(Priority priority) {
+        long seed = hold();
+        generate(seed, priority);
+        try {
+            assertEquals(Long.valueOf(seed), nextStarted());
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return seed;
+    }
+
+    private String generate(long seed, Priority priority) {
+        String boardId = BoardGenerator.generateBoard(2, seed, Algorithm.BACKTRACK, ConstraintSet.CLASSIC, priority,
+                                                      null, null);
+        boardIds.add(boardId);
+        return boardId;
+    }
+
+    private static long seed() {
+        return nextSeed.getAndIncrement();
+    }
+
+    private long hold() {
+        long seed = seed();
+        held.add(seed);
+        return seed;
+    }
+
+    private void release(long seed) {
+        held.remove(seed);
+    }
+
+    private Long nextStarted() throws InterruptedException {
+        Long seed = started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("no generator started", seed);
+        return seed;
+    }
+
+    private Long nextStored() throws InterruptedException {
+        Long seed = stored.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("no board stored", seed);
+        return seed;
+    }
+
+    /**
+     * Waits while its board's seed is held, unless it's cancelled.
+     */
+    private class HeldGenerator extends Generator {
+        private final Board board;
+
+        HeldGenerator(Board board, Algorithm algorithm) {
+            super(board, algorithm);
+            this.board = board;
+        }
+
+        @Override
+        public boolean generate() {
+            long seed = board.getRandomSeed();
+            started.add(seed);
+            while (held.contains(seed)) {
+                if (isCancelled()) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return super.generate();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+import com.shadedreality.sudokugen.Algorithm;
+import com.shadedreality.sudokugen.Board;
+import com.shadedreality.sudokugen.ConstraintSet;
+import com.shadedreality.sudokugen.Generator;
+import com.shadedreality.sudokugen.PuzzleCarver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.BadRequestException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks against puzzles put straight into the solution cache, so no database is needed.
+ */
+public class PuzzleCheckerTest {
+    private static final int[] NONE = {};
+
+    private Puzzle puzzle;
+    private int[] board;
+    private int[] mask;
+
+    @Before
+    public void setUp() {
+        Board generated = new Board(4, 5L, ConstraintSet.CLASSIC);
+        assertTrue(new Generator(generated, Algorithm.DLX).generate());
+        board = generated.toIntArray();
+        mask = new PuzzleCarver(4).carve(board, 5L);
+        puzzle = new Puzzle(4, 5L, 4, Algorithm.DLX, ConstraintSet.CLASSIC);
+        puzzle.setBoard(board);
+        puzzle.setPuzzle(mask);
+        PuzzleChecker.remember(puzzle);
+    }
+
+    @After
+    public void tearDown() {
+        PuzzleChecker.forget(puzzle.getPuzzleId());
+    }
+
+    @Test
+    public void emptyAnswerHasEverythingLeft() {
+        int[] grid = new int[board.length];
+        Arrays.fill(grid, -1);
+        CheckResult result = PuzzleChecker.check(puzzle.getPuzzleId(), grid);
+        assertArrayEquals(NONE, result.getWrong());
+        assertArrayEquals(NONE, result.getConflicts());
+        int givens = 0;
+        for (int given : mask) {
+            givens += given;
+        }
+        assertEquals(board.length - givens, result.getRemaining());
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    public void solutionIsComplete() {
+        CheckResult result = PuzzleChecker.check(puzzle.getPuzzleId(), board.clone());
+        assertArrayEquals(NONE, result.getWrong());
+        assertArrayEquals(NONE, result.getConflicts());
+        assertEquals(0, result.getRemaining());
+        assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void findsWrongCellsInEveryWord() {
+        // one wrong cell in each 64 cell word of the packed solution, plus the last cell
+        int[] grid = board.clone();
+        int[] cells = {3, 70, 130, 200, 255};
+        for (int cell : cells) {
+            grid[cell] = (board[cell] + 1) % 16;
+        }
+        CheckResult result = PuzzleChecker.check(puzzle.getPuzzleId(), grid);
+        assertArrayEquals(cells, result.getWrong());
+        assertTrue(result.getConflicts().length > 0);
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    public void emptyGivensAreFilledIn() {
+        // a wrong value that clashes with a given the client left empty still conflicts
+        int given = -1;
+        int empty = -1;
+        for (int cell = 0; cell < 16 && (given < 0 || empty < 0); cell++) {
+            if (mask[cell] != 0) {
+                given = (given < 0) ? cell : given;
+            } else {
+                empty = (empty < 0) ? cell : empty;
+            }
+        }
+        int[] grid = new int[board.length];
+        Arrays.fill(grid, -1);
+        grid[empty] = board[given];
+        CheckResult result = PuzzleChecker.check(puzzle.getPuzzleId(), grid);
+        assertArrayEquals(new int[] {empty}, result.getWrong());
+        int[] conflicts = result.getConflicts();
+        assertTrue(Arrays.binarySearch(conflicts, given) >= 0);
+        assertTrue(Arrays.binarySearch(conflicts, empty) >= 0);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void rejectsWrongGridSize() {
+        PuzzleChecker.check(puzzle.getPuzzleId(), new int[81]);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void rejectsValuesOutOfRange() {
+        int[] grid = board.clone();
+        grid[0] = 16;
+        PuzzleChecker.check(puzzle.getPuzzleId(), grid);
+    }
+}
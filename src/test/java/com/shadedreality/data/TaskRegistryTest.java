@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskRegistryTest {
+    private TaskRegistry<String> registry;
+
+    @Before
+    public void setUp() {
+        // tasks are filed under their length and first letter
+        registry = new TaskRegistry<>(task -> Arrays.asList("length" + task.length(), "first" + task.charAt(0)));
+        registry.add("1", "apple");
+        registry.add("2", "avocado");
+        registry.add("3", "peach");
+    }
+
+    @Test
+    public void findsTasksById() {
+        assertEquals("apple", registry.get("1"));
+        assertEquals("peach", registry.get("3"));
+        assertNull(registry.get("4"));
+        assertEquals(3, registry.all().size());
+    }
+
+    @Test
+    public void countsTasksByKey() {
+        assertEquals(3, registry.count(null));
+        assertEquals(2, registry.count("length5"));
+        assertEquals(2, registry.count("firsta"));
+        assertEquals(1, registry.count("firstp"));
+        assertEquals(0, registry.count("length9"));
+        assertEquals(2, registry.indexed("firsta").size());
+        assertTrue(registry.indexed("length5").contains("peach"));
+        assertTrue(registry.indexed("length9").isEmpty());
+        assertEquals(3, registry.indexed(null).size());
+    }
+
+    @Test
+    public void removeDropsTaskFromEveryKey() {
+        assertTrue(registry.remove("1", "apple"));
+        assertNull(registry.get("1"));
+        assertEquals(2, registry.count(null));
+        assertEquals(1, registry.count("length5"));
+        assertEquals(1, registry.count("firsta"));
+        assertFalse(registry.indexed("firsta").contains("apple"));
+        // only the first remove counts
+        assertFalse(registry.remove("1", "apple"));
+        assertEquals(2, registry.count(null));
+    }
+
+    @Test
+    public void removeNeedsTheRegisteredTask() {
+        // another task under the same ID is left alone
+        assertFalse(registry.remove("3", "apple"));
+        assertEquals("peach", registry.get("3"));
+        assertEquals(1, registry.count("firstp"));
+        assertEquals(2, registry.count("firsta"));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BoardValidatorTest {
+    private static final int[] NONE = {};
+
+    @Test
+    public void validGridsHaveNoConflicts() {
+        BoardValidator validator = new BoardValidator(3);
+        assertArrayEquals(NONE, validator.findConflicts(Grids.parse(Grids.SOLUTION)));
+        assertArrayEquals(NONE, validator.findConflicts(Grids.parse(Grids.PUZZLE)));
+        int[] empty = new int[81];
+        Arrays.fill(empty, -1);
+        assertArrayEquals(NONE, validator.findConflicts(empty));
+    }
+
+    @Test
+    public void findsEveryCellOfAConflict() {
+        int[] grid = Grids.parse(Grids.PUZZLE);
+        // 5 again at the end of the top row, which also has a 5 in column 8 further down
+        grid[8] = 4;
+        assertArrayEquals(new int[] {0, 8, 71}, new BoardValidator(3).findConflicts(grid));
+    }
+
+    @Test
+    public void findsConflictsInEachKindOfGroup() {
+        BoardValidator validator = new BoardValidator(3);
+        int[] row = Grids.parse(Grids.PUZZLE);
+        row[7] = 4; // the 5 in cell 0
+        assertArrayEquals(new int[] {0, 7}, validator.findConflicts(row));
+
+        int[] column = Grids.parse(Grids.PUZZLE);
+        column[8] = 0; // the 1 in cell 44
+        assertArrayEquals(new int[] {8, 44}, validator.findConflicts(column));
+
+        int[] block = Grids.parse(Grids.PUZZLE);
+        block[10] = 7; // the 8 in cell 20
+        assertArrayEquals(new int[] {10, 20}, validator.findConflicts(block));
+    }
+
+    @Test
+    public void reusedValidatorStartsClean() {
+        BoardValidator validator = new BoardValidator(3);
+        int[] grid = Grids.parse(Grids.SOLUTION);
+        int saved = grid[1];
+        grid[1] = grid[0]; // a second 5, which is also in column 1 further down
+        assertArrayEquals(new int[] {0, 1, 28}, validator.findConflicts(grid));
+        grid[1] = saved;
+        assertArrayEquals(NONE, validator.findConflicts(grid));
+    }
+
+    @Test
+    public void checksVariantGroups() {
+        // the classic solution repeats 5 and 7 down its main diagonal
+        int[] grid = Grids.parse(Grids.SOLUTION);
+        assertArrayEquals(NONE, new BoardValidator(3, ConstraintSet.CLASSIC).findConflicts(grid));
+        int[] conflicts = new BoardValidator(3, ConstraintSet.X).findConflicts(grid);
+        assertTrue(conflicts.length > 0);
+        for (int cell : conflicts) {
+            boolean diagonal = cell % 10 == 0 || (cell % 8 == 0 && cell > 0 && cell < 80);
+            assertTrue("cell " + cell, diagonal);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsValuesOutOfRange() {
+        int[] grid = Grids.parse(Grids.PUZZLE);
+        grid[4] = 9;
+        new BoardValidator(3).findConflicts(grid);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongGridSize() {
+        new BoardValidator(3).findConflicts(new int[80]);
+    }
+}
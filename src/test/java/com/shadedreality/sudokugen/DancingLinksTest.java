@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DancingLinksTest {
+    @Test
+    public void solvesKnownPuzzle() {
+        int[] grid = Grids.parse(Grids.PUZZLE);
+        assertTrue(new DancingLinks(3).solve(grid));
+        assertArrayEquals(Grids.parse(Grids.SOLUTION), grid);
+    }
+
+    @Test
+    public void countsEverySmallGrid() {
+        // there are 288 valid 4x4 grids
+        int[] empty = new int[16];
+        Arrays.fill(empty, -1);
+        DancingLinks dlx = new DancingLinks(2);
+        assertEquals(288, dlx.countSolutions(empty, 0));
+        assertEquals(10, dlx.countSolutions(empty, 10));
+        // the grid is left as it was
+        for (int value : empty) {
+            assertEquals(-1, value);
+        }
+    }
+
+    @Test
+    public void countsUniqueAndAmbiguousPuzzles() {
+        DancingLinks dlx = new DancingLinks(3);
+        int[] puzzle = Grids.parse(Grids.PUZZLE);
+        assertEquals(1, dlx.countSolutions(puzzle, 2));
+
+        // a full row and column of the solution with nothing else leaves plenty of solutions
+        int[] solution = Grids.parse(Grids.SOLUTION);
+        int[] sparse = new int[81];
+        Arrays.fill(sparse, -1);
+        for (int ii = 0; ii < 9; ii++) {
+            sparse[ii] = solution[ii];
+            sparse[ii * 9] = solution[ii * 9];
+        }
+        assertEquals(2, dlx.countSolutions(sparse, 2));
+    }
+
+    @Test
+    public void rejectsConflictingGivens() {
+        int[] grid = Grids.parse(Grids.PUZZLE);
+        grid[2] = grid[0]; // same value twice in the top row
+        DancingLinks dlx = new DancingLinks(3);
+        assertEquals(0, dlx.countSolutions(grid, 2));
+        assertFalse(dlx.solve(grid));
+    }
+
+    @Test
+    public void generatesValidBoards() {
+        for (ConstraintSet constraints : ConstraintSet.values()) {
+            for (int size = 2; size <= 3; size++) {
+                DancingLinks dlx = new DancingLinks(size, constraints);
+                GenRandom random = GenRandom.create(GenRandom.SPLITMIX);
+                int[] grid = new int[size * size * size * size];
+                for (long seed = 1; seed <= 20; seed++) {
+                    random.setSeed(seed);
+                    assertTrue(dlx.generate(random, grid));
+                    assertTrue(constraints + " size " + size + " seed " + seed,
+                               Grids.isSolution(size, constraints, grid));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void generatesSameBoardForSameSeed() {
+        GenRandom random = GenRandom.create(GenRandom.SPLITMIX);
+        int[] first = new int[81];
+        int[] second = new int[81];
+        random.setSeed(42);
+        assertTrue(new DancingLinks(3).generate(random, first));
+        random.setSeed(42);
+        assertTrue(new DancingLinks(3).generate(random, second));
+        assertArrayEquals(first, second);
+
+        random.setSeed(43);
+        assertTrue(new DancingLinks(3).generate(random, second));
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    public void cancelledSearchFindsNothing() {
+        DancingLinks dlx = new DancingLinks(3);
+        dlx.cancel();
+        assertFalse(dlx.solve(Grids.parse(Grids.PUZZLE)));
+    }
+}
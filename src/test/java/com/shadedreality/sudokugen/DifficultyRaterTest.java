@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DifficultyRaterTest {
+    @Test
+    public void fullBoardNeedsNothing() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        int[] mask = new int[81];
+        Arrays.fill(mask, 1);
+        DifficultyRating rating = new DifficultyRater(3).rate(board, mask);
+        assertEquals(DifficultyRater.MIN_DIFFICULTY, rating.getDifficulty());
+        assertEquals(0, rating.getScore());
+    }
+
+    @Test
+    public void scoreIsWeightedSteps() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        int[] mask = new PuzzleCarver(3).carve(board, 3L);
+        DifficultyRating rating = new DifficultyRater(3).rate(board, mask);
+        int score = 0;
+        int steps = 0;
+        for (Technique technique : Technique.values()) {
+            score += rating.getSteps(technique) * technique.getWeight();
+            steps += rating.getSteps(technique);
+        }
+        assertEquals(score, rating.getScore());
+        // every step but an elimination fills a cell
+        int empty = 0;
+        for (int given : mask) {
+            empty += 1 - given;
+        }
+        assertTrue(steps >= empty);
+    }
+
+    @Test
+    public void everyDifficultyIsReachable() {
+        // the scale is only useful for targeting if carving a board over and over hits every step of it
+        DancingLinks dlx = new DancingLinks(3);
+        GenRandom random = GenRandom.create(GenRandom.SPLITMIX);
+        PuzzleCarver carver = new PuzzleCarver(3);
+        DifficultyRater rater = new DifficultyRater(3);
+        boolean[] seen = new boolean[DifficultyRater.MAX_DIFFICULTY + 1];
+        int[] board = new int[81];
+        for (long seed = 1; seed <= 40; seed++) {
+            random.setSeed(seed);
+            assertTrue(dlx.generate(random, board));
+            for (int variant = 0; variant < 5; variant++) {
+                int[] mask = carver.carve(board, PuzzleCarver.variantSeed(seed, variant));
+                seen[rater.rate(board, mask).getDifficulty()] = true;
+            }
+        }
+        for (int difficulty = DifficultyRater.MIN_DIFFICULTY; difficulty <= DifficultyRater.MAX_DIFFICULTY;
+             difficulty++) {
+            assertTrue("difficulty " + difficulty, seen[difficulty]);
+        }
+    }
+
+    @Test
+    public void smallBoardsOnlyReachTheEasiestDifficulty() {
+        for (ConstraintSet constraints : ConstraintSet.values()) {
+            assertEquals(DifficultyRater.MIN_DIFFICULTY, DifficultyRater.maxDifficulty(2, constraints));
+            assertEquals(DifficultyRater.MAX_DIFFICULTY, DifficultyRater.maxDifficulty(3, constraints));
+        }
+        assertEquals(DifficultyRater.MAX_DIFFICULTY, DifficultyRater.maxDifficulty(4, ConstraintSet.CLASSIC));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * (algorithm, version, size, seed) must always identify exactly one board. If one of these tests fails after a change
+ * to a generator, the change needs a version bump in {@link Algorithm}, not new expected boards.
+ */
+public class GeneratorTest {
+    @Test
+    public void backtrackMatchesOriginalGenerator() {
+        // boards generated by the original Cell based generator, values in base 36
+        assertBoard("2103031212303021", 2, 1L, Algorithm.BACKTRACK);
+        assertBoard("1230302103122103", 2, 12345L, Algorithm.BACKTRACK);
+        assertBoard("602581743751463820348720516286347105430152678517806432065274381124638057873015264",
+                    3, 1L, Algorithm.BACKTRACK);
+        assertBoard("456012738182537604073864215821640573704253861365178042618305427237486150540721386",
+                    3, 12345L, Algorithm.BACKTRACK);
+    }
+
+    @Test
+    public void sameSeedGeneratesSameBoard() {
+        for (Algorithm algorithm : Algorithm.values()) {
+            for (long seed = 1; seed <= 5; seed++) {
+                int[] first = generate(3, seed, algorithm, ConstraintSet.CLASSIC);
+                int[] second = generate(3, seed, algorithm, ConstraintSet.CLASSIC);
+                assertTrue(algorithm + " seed " + seed, Grids.isSolution(3, ConstraintSet.CLASSIC, first));
+                assertArrayEquals(algorithm + " seed " + seed, first, second);
+            }
+        }
+    }
+
+    @Test
+    public void variantBoardsFollowTheirRules() {
+        for (Algorithm algorithm : Algorithm.values()) {
+            if (algorithm == Algorithm.TRANSFORM) {
+                continue; // classic rules only
+            }
+            for (ConstraintSet constraints : ConstraintSet.values()) {
+                int[] board = generate(3, 99L, algorithm, constraints);
+                assertTrue(algorithm + " " + constraints, Grids.isSolution(3, constraints, board));
+            }
+        }
+    }
+
+    @Test
+    public void algorithmsMapSeedsIndependently() {
+        int[] backtrack = generate(3, 7L, Algorithm.BACKTRACK, ConstraintSet.CLASSIC);
+        int[] dlx = generate(3, 7L, Algorithm.DLX, ConstraintSet.CLASSIC);
+        assertFalse(Arrays.equals(backtrack, dlx));
+    }
+
+    @Test
+    public void randomSeedIsRecorded() {
+        Board board = new Board(3, 0L, ConstraintSet.CLASSIC);
+        assertTrue(new Generator(board, Algorithm.MRV).generate());
+        long seed = board.getRandomSeed();
+        assertTrue(seed != 0);
+        assertArrayEquals(board.toIntArray(), generate(3, seed, Algorithm.MRV, ConstraintSet.CLASSIC));
+    }
+
+    @Test
+    public void looksUpAlgorithmsById() {
+        for (Algorithm algorithm : Algorithm.values()) {
+            assertEquals(algorithm, Algorithm.fromId(algorithm.getId().toUpperCase()));
+        }
+        assertEquals(Algorithm.BACKTRACK, Algorithm.fromId(Algorithm.LEGACY_ID));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownAlgorithm() {
+        Algorithm.fromId("guesswork");
+    }
+
+    @Test
+    public void cancelledGeneratorGivesUp() {
+        Generator generator = new Generator(new Board(3, 1L, ConstraintSet.CLASSIC), Algorithm.DLX);
+        generator.cancel();
+        assertFalse(generator.generate());
+    }
+
+    private static void assertBoard(String expected, int size, long seed, Algorithm algorithm) {
+        int[] board = generate(size, seed, algorithm, ConstraintSet.CLASSIC);
+        StringBuilder actual = new StringBuilder();
+        for (int value : board) {
+            actual.append(Integer.toString(value, 36));
+        }
+        assertEquals(algorithm + " size " + size + " seed " + seed, expected, actual.toString());
+    }
+
+    private static int[] generate(int size, long seed, Algorithm algorithm, ConstraintSet constraints) {
+        Board board = new Board(size, seed, constraints);
+        assertTrue(new Generator(board, algorithm).generate());
+        return board.toIntArray();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+/**
+ * Grids shared by the engine tests, and checks that don't depend on the engines under test.
+ */
+final class Grids {
+    /**
+     * A classic 9x9 puzzle with a single solution.
+     */
+    static final String PUZZLE =
+            "53..7...." + "6..195..." + ".98....6." +
+            "8...6...3" + "4..8.3..1" + "7...2...6" +
+            ".6....28." + "...419..5" + "....8..79";
+
+    static final String SOLUTION =
+            "534678912" + "672195348" + "198342567" +
+            "859761423" + "426853791" + "713924856" +
+            "961537284" + "287419635" + "345286179";
+
+    private Grids() {}
+
+    /**
+     * Parse a 9x9 grid written as digits 1-9, with '.' for empty cells.
+     * @return grid with values 0-8 and -1 for empty cells
+     */
+    static int[] parse(String text) {
+        int[] grid = new int[text.length()];
+        for (int cell = 0; cell < grid.length; cell++) {
+            char ch = text.charAt(cell);
+            grid[cell] = (ch == '.') ? -1 : ch - '1';
+        }
+        return grid;
+    }
+
+    /**
+     * @return true if the grid is complete and every group holds every value once
+     */
+    static boolean isSolution(int size, ConstraintSet constraints, int[] grid) {
+        BoardTopology topology = BoardTopology.forSize(size, constraints);
+        if (grid.length != topology.cellCount) {
+            return false;
+        }
+        for (int[] group : topology.groups) {
+            int seen = 0;
+            for (int cell : group) {
+                if (grid[cell] < 0 || grid[cell] >= topology.groupCount) {
+                    return false;
+                }
+                seen |= 1 << grid[cell];
+            }
+            if (seen != BitMasks.fullMask(topology.groupCount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the givens of a puzzle, the solution's value where the mask is 1 and -1 elsewhere
+     */
+    static int[] givens(int[] solution, int[] mask) {
+        int[] grid = new int[solution.length];
+        for (int cell = 0; cell < grid.length; cell++) {
+            grid[cell] = (mask[cell] != 0) ? solution[cell] : -1;
+        }
+        return grid;
+    }
+}
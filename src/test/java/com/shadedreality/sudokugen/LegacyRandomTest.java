@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LegacyRandomTest {
+    private static final long[] SEEDS = {0L, 1L, -1L, 42L, 8675309L, Long.MIN_VALUE, Long.MAX_VALUE,
+                                         0x123456789ABCDEFL};
+
+    @Test
+    public void matchesJavaUtilRandom() {
+        // powers of two take a different path, and large bounds hit the rejection loop
+        int[] bounds = {1, 2, 3, 4, 7, 9, 16, 25, 81, 256, 1000, (1 << 30) + 1, Integer.MAX_VALUE};
+        GenRandom legacy = GenRandom.create(GenRandom.LEGACY);
+        for (long seed : SEEDS) {
+            Random random = new Random(seed);
+            legacy.setSeed(seed);
+            for (int ii = 0; ii < 10000; ii++) {
+                int bound = bounds[ii % bounds.length];
+                assertEquals("seed " + seed + " draw " + ii, random.nextInt(bound), legacy.nextInt(bound));
+                if (ii % 7 == 0) {
+                    assertEquals("seed " + seed + " draw " + ii, random.nextBoolean(), legacy.nextBoolean());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reseedingRestartsTheSequence() {
+        Random random = new Random();
+        GenRandom legacy = GenRandom.create(GenRandom.LEGACY);
+        legacy.setSeed(7);
+        legacy.nextInt(100);
+        random.setSeed(7);
+        legacy.setSeed(7);
+        for (int ii = 0; ii < 100; ii++) {
+            assertEquals(random.nextInt(9), legacy.nextInt(9));
+        }
+    }
+
+    @Test
+    public void createsEachVersion() {
+        assertEquals(GenRandom.LEGACY, GenRandom.create(GenRandom.LEGACY).getVersion());
+        assertEquals(GenRandom.SPLITMIX, GenRandom.create(GenRandom.SPLITMIX).getVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() {
+        GenRandom.create(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroBound() {
+        GenRandom.create(GenRandom.LEGACY).nextInt(0);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PuzzleCarverTest {
+    @Test
+    public void carvesUniqueMinimalPuzzles() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        PuzzleCarver carver = new PuzzleCarver(3);
+        DancingLinks dlx = new DancingLinks(3);
+        for (long seed = 1; seed <= 10; seed++) {
+            int[] mask = carver.carve(board, seed);
+            int[] puzzle = Grids.givens(board, mask);
+            assertEquals("seed " + seed, 1, dlx.countSolutions(puzzle, 2));
+            for (int cell = 0; cell < 81; cell++) {
+                if (mask[cell] == 0) {
+                    continue;
+                }
+                // every clue is needed
+                puzzle[cell] = -1;
+                assertEquals("seed " + seed + " cell " + cell, 2, dlx.countSolutions(puzzle, 2));
+                puzzle[cell] = board[cell];
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedCarvesSamePuzzle() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        int[] first = new PuzzleCarver(3).carve(board, 1234L);
+        int[] second = new PuzzleCarver(3).carve(board, 1234L);
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, new PuzzleCarver(3).carve(board, 1235L)));
+    }
+
+    @Test
+    public void parallelCarvingMatchesSingleThreaded() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        PuzzleCarver single = new PuzzleCarver(3, ConstraintSet.CLASSIC, 1);
+        PuzzleCarver parallel = new PuzzleCarver(3, ConstraintSet.CLASSIC, 4);
+        for (long seed = 1; seed <= 10; seed++) {
+            assertArrayEquals("seed " + seed, single.carve(board, seed), parallel.carve(board, seed));
+        }
+    }
+
+    @Test
+    public void symmetricLayoutsAreSymmetric() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        PuzzleCarver carver = new PuzzleCarver(3);
+        DancingLinks dlx = new DancingLinks(3);
+        for (Symmetry symmetry : Symmetry.values()) {
+            int[] mask = carver.carve(board, 77L, symmetry);
+            assertEquals(symmetry.getId(), 1, dlx.countSolutions(Grids.givens(board, mask), 2));
+            for (int[] orbit : symmetry.orbits(3)) {
+                for (int cell : orbit) {
+                    assertEquals(symmetry.getId() + " orbit of " + orbit[0], mask[orbit[0]], mask[cell]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void variantPuzzlesAreUniqueUnderTheirRules() {
+        GenRandom random = GenRandom.create(GenRandom.SPLITMIX);
+        for (ConstraintSet constraints : ConstraintSet.values()) {
+            int[] board = new int[81];
+            random.setSeed(5);
+            assertTrue(new DancingLinks(3, constraints).generate(random, board));
+            int[] mask = new PuzzleCarver(3, constraints).carve(board, 5L);
+            int[] puzzle = Grids.givens(board, mask);
+            assertEquals(constraints.getId(), 1, new DancingLinks(3, constraints).countSolutions(puzzle, 2));
+        }
+    }
+
+    @Test
+    public void variantSeedZeroIsThePuzzleSeed() {
+        assertEquals(1234L, PuzzleCarver.variantSeed(1234L, 0));
+        assertFalse(PuzzleCarver.variantSeed(1234L, 1) == PuzzleCarver.variantSeed(1234L, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIncompleteBoard() {
+        new PuzzleCarver(3).carve(Grids.parse(Grids.PUZZLE), 1L);
+    }
+}
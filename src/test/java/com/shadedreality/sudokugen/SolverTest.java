@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolverTest {
+    @Test
+    public void solvesKnownPuzzle() {
+        Solver solver = new Solver(3);
+        assertTrue(solver.load(Grids.parse(Grids.PUZZLE)));
+        int[] solution = new int[81];
+        assertTrue(solver.solve(solution));
+        assertArrayEquals(Grids.parse(Grids.SOLUTION), solution);
+        assertEquals(1, solver.countSolutions(2));
+    }
+
+    @Test
+    public void agreesWithDancingLinks() {
+        // random partial grids of generated boards, from nearly full to nearly empty, so both unique and ambiguous
+        // puzzles come up
+        GenRandom random = GenRandom.create(GenRandom.SPLITMIX);
+        for (ConstraintSet constraints : ConstraintSet.values()) {
+            Solver solver = new Solver(3, constraints);
+            DancingLinks dlx = new DancingLinks(3, constraints);
+            int[] board = new int[81];
+            int[] grid = new int[81];
+            for (long seed = 1; seed <= 60; seed++) {
+                random.setSeed(seed);
+                assertTrue(dlx.generate(random, board));
+                int clues = 20 + random.nextInt(40);
+                Arrays.fill(grid, -1);
+                for (int placed = 0; placed < clues; ) {
+                    int cell = random.nextInt(81);
+                    if (grid[cell] == -1) {
+                        grid[cell] = board[cell];
+                        placed++;
+                    }
+                }
+                assertTrue(solver.load(grid));
+                String where = constraints + " seed " + seed;
+                assertEquals(where, dlx.countSolutions(grid, 2), solver.countSolutions(2));
+                assertEquals(where, dlx.countSolutions(grid, 10), solver.countSolutions(10));
+            }
+        }
+    }
+
+    @Test
+    public void checksSingleClueRemovals() {
+        Solver solver = new Solver(3);
+        DancingLinks dlx = new DancingLinks(3);
+        int[] puzzle = Grids.parse(Grids.PUZZLE);
+        int[] solution = Grids.parse(Grids.SOLUTION);
+        assertTrue(solver.load(puzzle));
+        for (int cell = 0; cell < 81; cell++) {
+            if (puzzle[cell] == -1) {
+                continue;
+            }
+            solver.clearGiven(cell);
+            int[] without = puzzle.clone();
+            without[cell] = -1;
+            boolean ambiguous = dlx.countSolutions(without, 2) > 1;
+            assertEquals("cell " + cell, ambiguous, solver.hasSolutionWithout(cell, solution[cell]));
+            solver.setGiven(cell, puzzle[cell]);
+        }
+        assertEquals(1, solver.countSolutions(2));
+    }
+
+    @Test
+    public void findsAnotherSolution() {
+        int[] solution = Grids.parse(Grids.SOLUTION);
+        int[] grid = solution.clone();
+        // a deadly pattern, the two values can be swapped in all four cells
+        int[] rectangle = rectangle(solution);
+        for (int cell : rectangle) {
+            grid[cell] = -1;
+        }
+        Solver solver = new Solver(3);
+        assertTrue(solver.load(grid));
+        int[] other = new int[81];
+        assertTrue(solver.findOtherSolution(solution, other));
+        assertTrue(Grids.isSolution(3, ConstraintSet.CLASSIC, other));
+        assertFalse(Arrays.equals(solution, other));
+
+        assertTrue(solver.load(Grids.parse(Grids.PUZZLE)));
+        assertFalse(solver.findOtherSolution(solution, other));
+    }
+
+    @Test
+    public void incrementalGivensMatchLoad() {
+        int[] puzzle = Grids.parse(Grids.PUZZLE);
+        Solver solver = new Solver(3);
+        int[] empty = new int[81];
+        Arrays.fill(empty, -1);
+        assertTrue(solver.load(empty));
+        for (int cell = 0; cell < 81; cell++) {
+            if (puzzle[cell] != -1) {
+                solver.setGiven(cell, puzzle[cell]);
+            }
+        }
+        for (int cell = 0; cell < 81; cell++) {
+            assertEquals(puzzle[cell], solver.getGiven(cell));
+        }
+        assertEquals(1, solver.countSolutions(2));
+    }
+
+    @Test
+    public void conflictingGivensHaveNoSolutions() {
+        int[] grid = Grids.parse(Grids.PUZZLE);
+        grid[2] = grid[0];
+        Solver solver = new Solver(3);
+        assertFalse(solver.load(grid));
+        assertEquals(0, solver.countSolutions(2));
+        assertFalse(solver.solve(new int[81]));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsConflictingGiven() {
+        Solver solver = new Solver(3);
+        assertTrue(solver.load(Grids.parse(Grids.PUZZLE)));
+        solver.setGiven(2, 4); // 5 is already in the top row
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongGridSize() {
+        new Solver(3).load(new int[16]);
+    }
+
+    /**
+     * Find two rows in the same band and two columns in the same stack holding the same pair of values swapped.
+     */
+    private static int[] rectangle(int[] solution) {
+        for (int r1 = 0; r1 < 9; r1++) {
+            for (int r2 = r1 + 1; r2 < (r1 / 3 + 1) * 3; r2++) {
+                for (int c1 = 0; c1 < 9; c1++) {
+                    for (int c2 = c1 + 1; c2 < 9; c2++) {
+                        int a = r1 * 9 + c1, b = r1 * 9 + c2, c = r2 * 9 + c1, d = r2 * 9 + c2;
+                        if (solution[a] == solution[d] && solution[b] == solution[c]) {
+                            return new int[] {a, b, c, d};
+                        }
+                    }
+                }
+            }
+        }
+        throw new AssertionError("no rectangle in the solution");
+    }
+}
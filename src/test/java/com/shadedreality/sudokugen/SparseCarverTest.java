@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018, Shaded Reality, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shadedreality.sudokugen;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SparseCarverTest {
+    @Test
+    public void findsSparserUniquePuzzles() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        int[] carved = new PuzzleCarver(3).carve(board, 9L);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+        int[] sparse = new SparseCarver(3).carve(board, 9L, deadline);
+        assertEquals(1, new DancingLinks(3).countSolutions(Grids.givens(board, sparse), 2));
+        assertTrue(clues(sparse) <= clues(carved));
+    }
+
+    @Test
+    public void stopsAtTheDeadline() {
+        Board board = new Board(4, 11L, ConstraintSet.CLASSIC);
+        assertTrue(new Generator(board, Algorithm.DLX).generate());
+        int[] solution = board.toIntArray();
+        // leave time for the first puzzle, which always finishes
+        long budget = TimeUnit.MILLISECONDS.toNanos(1500);
+        long start = System.nanoTime();
+        int[] mask = new SparseCarver(4).carve(solution, 11L, start + budget);
+        long overrun = System.nanoTime() - start - budget;
+        assertTrue("overran by " + TimeUnit.NANOSECONDS.toMillis(overrun) + "ms",
+                   overrun < TimeUnit.MILLISECONDS.toNanos(250));
+        assertEquals(1, new DancingLinks(4).countSolutions(Grids.givens(solution, mask), 2));
+    }
+
+    @Test
+    public void cancelledSearchGivesNothing() {
+        int[] board = Grids.parse(Grids.SOLUTION);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        long start = System.nanoTime();
+        long[] checks = {0};
+        int[] mask = new SparseCarver(3).carve(board, 9L, deadline, () -> ++checks[0] > 1000);
+        assertNull(mask);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    private static int clues(int[] mask) {
+        int count = 0;
+        for (int given : mask) {
+            count += given;
+        }
+        return count;
+    }
+}